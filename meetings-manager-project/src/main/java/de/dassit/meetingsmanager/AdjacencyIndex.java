@@ -0,0 +1,191 @@
+/*
+ * Copyright 2022 dass IT GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.dassit.meetingsmanager;
+
+import java.util.Arrays;
+
+/**
+ * An immutable mapping from int ids to sorted sets of int ids, e.g. from
+ * participants to their meetings. The rows are stored in compressed sparse
+ * row form: the sorted row ids, the offset of every row and all targets in
+ * a single array. Changes are kept in a small overlay map and copied into
+ * new arrays once the overlay grows, so a change does not copy all rows.
+ */
+public final class AdjacencyIndex {
+	public static final AdjacencyIndex EMPTY = new AdjacencyIndex(new int[0], new int[] { 0 }, new int[0],
+			new IntObjectMap<int[]>());
+
+	private static final int[] NONE = new int[0];
+
+	private final int[] rows;
+	/* the targets of rows[i] are targets[offsets[i]] to targets[offsets[i + 1] - 1] */
+	private final int[] offsets;
+	private final int[] targets;
+	/* rows changed since the arrays were built, an empty array for removed rows */
+	private final IntObjectMap<int[]> overlay;
+
+	private AdjacencyIndex(int[] rows, int[] offsets, int[] targets, IntObjectMap<int[]> overlay) {
+		this.rows = rows;
+		this.offsets = offsets;
+		this.targets = targets;
+		this.overlay = overlay;
+	}
+
+	/**
+	 * Builds an index from a list of edges.
+	 *
+	 * @param from   the row of every edge
+	 * @param to     the target of every edge
+	 * @param length the number of edges
+	 */
+	public static AdjacencyIndex of(int[] from, int[] to, int length) {
+		long[] edges = new long[length];
+		for (int i = 0; i < length; i++) {
+			edges[i] = ((long) from[i] << 32) | (to[i] & 0xFFFFFFFFL);
+		}
+		Arrays.sort(edges);
+
+		int[] rows = new int[length];
+		int[] offsets = new int[length + 1];
+		int[] targets = new int[length];
+		int n = 0;
+		int t = 0;
+		for (int i = 0; i < length; i++) {
+			int row = (int) (edges[i] >> 32);
+			int target = (int) edges[i];
+			if (n == 0 || rows[n - 1] != row) {
+				rows[n] = row;
+				offsets[n++] = t;
+			} else if (targets[t - 1] == target) {
+				continue;
+			}
+			targets[t++] = target;
+		}
+		offsets[n] = t;
+		return new AdjacencyIndex(Arrays.copyOf(rows, n), Arrays.copyOf(offsets, n + 1), Arrays.copyOf(targets, t),
+				new IntObjectMap<int[]>());
+	}
+
+	/**
+	 * @return the sorted targets of a row, empty if there are none. The
+	 *         array must not be changed.
+	 */
+	public int[] get(int row) {
+		int[] changed = overlay.get(row);
+		if (changed != null) {
+			return changed;
+		}
+		int i = Arrays.binarySearch(rows, row);
+		if (i < 0) {
+			return NONE;
+		}
+		return Arrays.copyOfRange(targets, offsets[i], offsets[i + 1]);
+	}
+
+	/**
+	 * @return a new index that also maps the row to the target
+	 */
+	public AdjacencyIndex with(int row, int target) {
+		int[] current = get(row);
+		int pos = Arrays.binarySearch(current, target);
+		if (pos >= 0) {
+			return this;
+		}
+		pos = -pos - 1;
+		int[] result = new int[current.length + 1];
+		System.arraycopy(current, 0, result, 0, pos);
+		result[pos] = target;
+		System.arraycopy(current, pos, result, pos + 1, current.length - pos);
+		return change(row, result);
+	}
+
+	/**
+	 * @return a new index that does not map the row to the target
+	 */
+	public AdjacencyIndex without(int row, int target) {
+		int[] current = get(row);
+		int pos = Arrays.binarySearch(current, target);
+		if (pos < 0) {
+			return this;
+		}
+		int[] result = new int[current.length - 1];
+		System.arraycopy(current, 0, result, 0, pos);
+		System.arraycopy(current, pos + 1, result, pos, result.length - pos);
+		return change(row, result);
+	}
+
+	private AdjacencyIndex change(int row, int[] rowTargets) {
+		IntObjectMap<int[]> changed = new IntObjectMap<int[]>(overlay);
+		changed.put(row, rowTargets);
+		if (changed.size() <= 64 + rows.length / 16) {
+			return new AdjacencyIndex(rows, offsets, targets, changed);
+		}
+		return compact(changed);
+	}
+
+	/**
+	 * @return an index with the overlay merged into new arrays
+	 */
+	private AdjacencyIndex compact(IntObjectMap<int[]> changed) {
+		int[] changedRows = changed.keys();
+		Arrays.sort(changedRows);
+		int[] allRows = new int[rows.length + changedRows.length];
+		int[] allOffsets = new int[allRows.length + 1];
+		int[] allTargets = new int[targets.length + totalLength(changed)];
+		int n = 0;
+		int t = 0;
+		int i = 0;
+		int c = 0;
+		while (i < rows.length || c < changedRows.length) {
+			int row;
+			int[] source;
+			int from;
+			int to;
+			if (c < changedRows.length && (i >= rows.length || changedRows[c] <= rows[i])) {
+				row = changedRows[c++];
+				if (i < rows.length && rows[i] == row) {
+					i++;
+				}
+				source = changed.get(row);
+				from = 0;
+				to = source.length;
+			} else {
+				row = rows[i];
+				source = targets;
+				from = offsets[i];
+				to = offsets[++i];
+			}
+			if (from == to) {
+				continue;
+			}
+			allRows[n] = row;
+			allOffsets[n++] = t;
+			System.arraycopy(source, from, allTargets, t, to - from);
+			t += to - from;
+		}
+		allOffsets[n] = t;
+		return new AdjacencyIndex(Arrays.copyOf(allRows, n), Arrays.copyOf(allOffsets, n + 1),
+				Arrays.copyOf(allTargets, t), new IntObjectMap<int[]>());
+	}
+
+	private static int totalLength(IntObjectMap<int[]> changed) {
+		int result = 0;
+		for (int[] rowTargets : changed.values()) {
+			result += rowTargets.length;
+		}
+		return result;
+	}
+}
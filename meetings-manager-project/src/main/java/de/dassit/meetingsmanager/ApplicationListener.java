@@ -0,0 +1,42 @@
+/*
+ * Copyright 2022 dass IT GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.dassit.meetingsmanager;
+
+import javax.servlet.ServletContextEvent;
+import javax.servlet.ServletContextListener;
+import javax.servlet.annotation.WebListener;
+
+/**
+ * Starts the background services of the application and releases
+ * application-wide resources like the database connection pool when
+ * the web application is stopped.
+ */
+@WebListener
+public class ApplicationListener implements ServletContextListener {
+
+	@Override
+	public void contextInitialized(ServletContextEvent sce) {
+		NotificationDispatcher.getInstance().start();
+		RetentionJob.getInstance().start();
+	}
+
+	@Override
+	public void contextDestroyed(ServletContextEvent sce) {
+		RetentionJob.getInstance().stop();
+		NotificationDispatcher.getInstance().stop();
+		DbConnection.close();
+	}
+}
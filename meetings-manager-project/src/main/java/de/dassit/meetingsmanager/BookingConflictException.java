@@ -0,0 +1,41 @@
+/*
+ * Copyright 2022 dass IT GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.dassit.meetingsmanager;
+
+import java.util.List;
+
+/**
+ * Thrown when a meeting is saved that books a room or resource which
+ * is already booked by another meeting at an overlapping time.
+ */
+public class BookingConflictException extends RuntimeException {
+	private static final long serialVersionUID = 1L;
+
+	private final List<Meeting> conflicts;
+
+	public BookingConflictException(Meeting meeting, List<Meeting> conflicts) {
+		super("Meeting " + meeting.getName() + " overlaps with " + conflicts.size()
+				+ " booking(s) of the same room or resource");
+		this.conflicts = conflicts;
+	}
+
+	/**
+	 * @return the meetings already booking the room or resource
+	 */
+	public List<Meeting> getConflicts() {
+		return conflicts;
+	}
+}
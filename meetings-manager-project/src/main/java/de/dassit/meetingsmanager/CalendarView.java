@@ -16,17 +16,21 @@
 package de.dassit.meetingsmanager;
 
 import java.time.DayOfWeek;
+import java.time.Instant;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
-import java.time.LocalTime;
 import java.time.ZoneId;
 import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
 import java.util.Date;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
 
 import org.vaadin.stefan.fullcalendar.BusinessHours;
 import org.vaadin.stefan.fullcalendar.CalendarViewImpl;
@@ -55,6 +59,12 @@ public class CalendarView extends VerticalLayout {
 	private HorizontalLayout toolbar;
 
 	private Map<String, String> roomColors = new HashMap<String, String>();
+	/* the entries shown in the calendar, by meeting id */
+	private Map<Integer, Entry> entries = new HashMap<Integer, Entry>();
+
+	/* the interval currently displayed, end exclusive */
+	private LocalDate intervalStart;
+	private LocalDate intervalEnd;
 
         /**
         *  This view shows a calendar (month overview) with all scheduled meetings. 
@@ -62,14 +72,15 @@ public class CalendarView extends VerticalLayout {
         */
 	public CalendarView() {
 		calendar = FullCalendarBuilder.create().build();
-		zid = ZoneId.of("Europe/Berlin");
+		zid = MeetingService.ZONE;
 		Timezone tz = new Timezone(zid);
 		calendar.setTimezone(tz);
 		calendar.setLocale(new Locale("de"));
 		calendar.setFirstDay(DayOfWeek.MONDAY);
 		calendar.setNowIndicatorShown(true);
 		calendar.setBusinessHours(
-				new BusinessHours(LocalTime.of(8, 0), LocalTime.of(17, 0), BusinessHours.DEFAULT_BUSINESS_WEEK));
+				new BusinessHours(MeetingService.BUSINESS_START, MeetingService.BUSINESS_END,
+						BusinessHours.DEFAULT_BUSINESS_WEEK));
 		calendar.setOption("weekends", false);
 		calendar.setOption("allDaySlot",false);
 		
@@ -90,34 +101,131 @@ public class CalendarView extends VerticalLayout {
 			roomColors.put(room, cols.next());
 		}
 
-		load();
+		// the meetings are loaded when the calendar reports the displayed dates
 	}
 
 	public void update() {
-		calendar.removeAllEntries();
 		load();
 	}
 
+	/**
+	 * Shows a meeting changed in any session, without reading the database.
+	 */
+	public void meetingChanged(MeetingChangeEvent event) {
+		Meeting m = event.getItem();
+		switch (event.getType()) {
+		case RELOADED:
+			update();
+			break;
+		case DELETED:
+			removeMeeting(m.getId());
+			break;
+		default:
+			if (isInRange(m)) {
+				showMeeting(m);
+			} else {
+				removeMeeting(m.getId());
+			}
+		}
+	}
+
+	/**
+	 * Loads the meetings of the displayed interval. Only the differences
+	 * to the entries already shown are sent to the browser.
+	 */
 	public void load() {
-		List<Meeting> meetings = MeetingService.getInstance().findAll();
+		if (intervalStart == null) {
+			return;
+		}
+		List<Meeting> meetings = MeetingService.getInstance().findBetween(rangeStart(), rangeEnd(), null, null);
+
+		Set<Integer> ids = new HashSet<Integer>();
+		for (Meeting m : meetings) {
+			ids.add(m.getId());
+		}
+		for (Integer id : new ArrayList<Integer>(entries.keySet())) {
+			if (!ids.contains(id)) {
+				removeMeeting(id);
+			}
+		}
 		addMeetings(meetings);
 	}
 
+	/* month views also show some days of the previous and next month */
+	private Instant rangeStart() {
+		return intervalStart.minusDays(7).atStartOfDay(zid).toInstant();
+	}
+
+	private Instant rangeEnd() {
+		return intervalEnd.plusDays(7).atStartOfDay(zid).toInstant();
+	}
+
+	private boolean isInRange(Meeting m) {
+		return intervalStart != null && m.getStart() != null && m.getEnd() != null
+				&& m.getStart().toInstant().isBefore(rangeEnd()) && m.getEnd().toInstant().isAfter(rangeStart());
+	}
+
+	private void showInterval(LocalDate start, LocalDate end) {
+		intervalStart = start;
+		intervalEnd = end;
+		updateDateLabel(start);
+		update();
+	}
+
 	public void addMeetings(List<Meeting> meetings) {
 		for (Meeting m : meetings) {
-			Entry entry = new Entry();
+			showMeeting(m);
+		}
+	}
+
+	/**
+	 * Adds the entry for a meeting, or updates it if it is already shown
+	 * and has changed. The entry id is derived from the meeting id, so
+	 * the browser can patch the entry in place. Meetings without start or
+	 * end cannot be placed in the calendar and are left out.
+	 */
+	private void showMeeting(Meeting m) {
+		if (m.getStart() == null || m.getEnd() == null) {
+			removeMeeting(m.getId());
+			return;
+		}
+		Entry entry = entries.get(m.getId());
+		if (entry == null) {
+			entry = new Entry("meeting-" + m.getId());
+			setEntryValues(entry, m);
+			entries.put(m.getId(), entry);
+			calendar.addEntry(entry);
+		} else if (setEntryValues(entry, m)) {
+			calendar.updateEntry(entry);
+		}
+	}
 
-			entry.setTitle(makeTitle(m));
-			entry.setStart(dateToLocal(m.getStart()));
-			entry.setEnd(dateToLocal(m.getEnd()));
+	private void removeMeeting(Integer id) {
+		Entry entry = entries.remove(id);
+		if (entry != null) {
+			calendar.removeEntry(entry);
+		}
+	}
 
-			String room = m.getRoom();
-			if (room != null && roomColors.containsKey(room)) {
-				entry.setColor(roomColors.get(m.getRoom()));
-			}
+	/**
+	 * @return true if the entry has been changed
+	 */
+	private boolean setEntryValues(Entry entry, Meeting m) {
+		String title = makeTitle(m);
+		LocalDateTime start = dateToLocal(m.getStart());
+		LocalDateTime end = dateToLocal(m.getEnd());
+		String room = m.getRoom();
+		String color = room != null ? roomColors.get(room) : null;
 
-			calendar.addEntry(entry);
+		if (title.equals(entry.getTitle()) && start.equals(entry.getStart()) && end.equals(entry.getEnd())
+				&& Objects.equals(color, entry.getColor())) {
+			return false;
 		}
+		entry.setTitle(title);
+		entry.setStart(start);
+		entry.setEnd(end);
+		entry.setColor(color);
+		return true;
 	}
 
 	private static String makeTitle(Meeting m) {
@@ -170,7 +278,7 @@ public class CalendarView extends VerticalLayout {
 			}
 		});
 
-		calendar.addDatesRenderedListener(event -> updateDateLabel(event.getIntervalStart()));
+		calendar.addDatesRenderedListener(event -> showInterval(event.getIntervalStart(), event.getIntervalEnd()));
 		
 		toolbar = new HorizontalLayout(switchView, buttonToday, buttonPrevious, buttonNext, buttonDatePicker, gotoDate);
 
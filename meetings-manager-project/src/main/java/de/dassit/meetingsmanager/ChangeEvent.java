@@ -0,0 +1,49 @@
+/*
+ * Copyright 2022 dass IT GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.dassit.meetingsmanager;
+
+/**
+ * Base class of the events published on the {@link EventBus} after
+ * meetings or participants have been changed, by any session or outside
+ * of the application.
+ */
+public abstract class ChangeEvent<T> {
+	public enum Type {
+		CREATED, UPDATED, DELETED,
+		/* the cache has been reloaded, anything may have changed */
+		RELOADED
+	}
+
+	private final Type type;
+	private final T item;
+
+	protected ChangeEvent(Type type, T item) {
+		this.type = type;
+		this.item = item;
+	}
+
+	public Type getType() {
+		return type;
+	}
+
+	/**
+	 * @return the changed object, as cached by the service (read-only),
+	 *         or null for {@link Type#RELOADED}
+	 */
+	public T getItem() {
+		return item;
+	}
+}
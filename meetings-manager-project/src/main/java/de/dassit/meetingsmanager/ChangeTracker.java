@@ -0,0 +1,107 @@
+/*
+ * Copyright 2022 dass IT GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.dassit.meetingsmanager;
+
+import java.sql.SQLException;
+import java.util.Collections;
+import java.util.List;
+
+import com.j256.ormlite.dao.Dao;
+
+/**
+ * Detects changes made to a table outside of the application, e.g. by
+ * meetingsdb.py or an LDAP import.
+ * Every row carries a "modified" timestamp (milliseconds, set by triggers
+ * on insert and update, see {@link SchemaMigrations}), so changed rows can
+ * be read with a single query.
+ * Deleted rows are noticed by comparing the row count and the sum of
+ * the ids with the cached objects.
+ * The check is done at most once per "cacheCheckInterval" milliseconds.
+ */
+public class ChangeTracker<T> {
+	private final Dao<T, Integer> dao;
+	private final String tableName;
+	private final long checkInterval;
+
+	/* read without locking by isCheckDue() and isLoaded() */
+	private volatile long lastCheck;
+	private volatile long lastModified = -1;
+	private long rowCount;
+	private long idSum;
+
+	public ChangeTracker(Dao<T, Integer> dao, String tableName) {
+		this.dao = dao;
+		this.tableName = tableName;
+		this.checkInterval = Configuration.getInstance().getLong("cacheCheckInterval", 5000);
+	}
+
+	/**
+	 * Remembers the state of the table. Must be called before
+	 * the table is read completely.
+	 */
+	public void reset() throws SQLException {
+		readState();
+		lastCheck = System.currentTimeMillis();
+	}
+
+	/**
+	 * @return true if the table has never been read or if
+	 *         the next check for changes is due
+	 */
+	public boolean isCheckDue() {
+		return lastModified < 0 || System.currentTimeMillis() - lastCheck >= checkInterval;
+	}
+
+	public boolean isLoaded() {
+		return lastModified >= 0;
+	}
+
+	/**
+	 * Reads the rows that have been inserted or updated since the
+	 * last call of this method or of {@link #reset()}.
+	 *
+	 * @return the changed rows, possibly empty
+	 */
+	public List<T> queryChanges() throws SQLException {
+		long since = lastModified;
+		reset();
+		if (lastModified <= since) {
+			return Collections.emptyList();
+		}
+		return dao.queryBuilder().where().raw("modified >= " + since).query();
+	}
+
+	/**
+	 * Compares the cached ids with the table state read by the last
+	 * check. A difference means that rows were deleted outside the
+	 * application and the cache has to be reloaded.
+	 */
+	public boolean matches(int[] ids) {
+		long sum = 0;
+		for (int id : ids) {
+			sum += id;
+		}
+		return ids.length == rowCount && sum == idSum;
+	}
+
+	private void readState() throws SQLException {
+		String[] row = dao.queryRaw("SELECT COUNT(*), COALESCE(SUM(id), 0), COALESCE(MAX(modified), 0) FROM "
+				+ tableName).getFirstResult();
+		rowCount = Long.parseLong(row[0]);
+		idSum = Long.parseLong(row[1]);
+		lastModified = Long.parseLong(row[2]);
+	}
+}
@@ -92,6 +92,36 @@ public class Configuration {
 		return props.getProperty(name);
 	}
 
+	/**
+	 * Returns a numeric setting, or the given default if the setting
+	 * is missing or not a valid number in the range of an int.
+	 */
+	public int getInt(String name, int defaultValue) {
+		String value = props == null ? null : props.getProperty(name);
+		if (value == null || value.trim().isEmpty()) {
+			return defaultValue;
+		}
+		try {
+			return Integer.parseInt(value.trim());
+		} catch (NumberFormatException e) {
+			Logger.getGlobal().warning("Invalid value for " + name + ": " + value + ", using " + defaultValue);
+			return defaultValue;
+		}
+	}
+
+	public long getLong(String name, long defaultValue) {
+		String value = props == null ? null : props.getProperty(name);
+		if (value == null || value.trim().isEmpty()) {
+			return defaultValue;
+		}
+		try {
+			return Long.parseLong(value.trim());
+		} catch (NumberFormatException e) {
+			Logger.getGlobal().warning("Invalid value for " + name + ": " + value + ", using " + defaultValue);
+			return defaultValue;
+		}
+	}
+
 	public List<String> getMultiValue(String name) {
 		ArrayList<String> result = new ArrayList<String>();
 
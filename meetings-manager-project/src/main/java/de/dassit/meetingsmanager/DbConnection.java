@@ -16,33 +16,78 @@
 package de.dassit.meetingsmanager;
 
 import java.sql.SQLException;
+import java.util.logging.Level;
 import java.util.logging.Logger;
 
-import com.j256.ormlite.jdbc.JdbcConnectionSource;
 import com.j256.ormlite.support.ConnectionSource;
 
 /**
-* This class holds the JDBC connection for ORMlite.
-* The JDBC URL is taken from the {@link Configuration} class.
+* This class holds the pooled JDBC connections for ORMlite.
+* The JDBC URL and the pool settings are taken from the {@link Configuration} class:
+* <ul>
+* <li>jdbcPoolSize - number of connections used for queries (default 8)</li>
+* <li>jdbcWritePoolSize - number of connections used for updates (default 1)</li>
+* <li>jdbcPoolMaxWait - milliseconds to wait for a free connection (default 10000)</li>
+* <li>jdbcPoolCheckInterval - milliseconds between checks of idle connections (default 30000)</li>
+* <li>jdbcPoolMaxAge - milliseconds after which a connection is reopened (default 1800000)</li>
+* </ul>
+* For SQLite databases the settings described in {@link SqlitePragmas} are
+* applied to every connection.
 * @author Sebastian Lederer <sebastian.lederer@dass-it.de>
 */
 
 public class DbConnection {
-	private static ConnectionSource connectionSource;
-
-	public synchronized static ConnectionSource getConnectionSource() {
-		if (connectionSource == null) {
-			if (connectionSource == null) {
-				try {
-					String jdbcUrl = Configuration.getInstance().get("jdbcUrl");
-					connectionSource = new JdbcConnectionSource(jdbcUrl);
-				} catch (SQLException e) {
-					Logger logger = Logger.getGlobal();
-					logger.severe(e.getMessage());
-					return null;
+	private static final Logger LOGGER = Logger.getLogger(DbConnection.class.getName());
+
+	private static volatile PooledConnectionSource connectionSource;
+
+	public static ConnectionSource getConnectionSource() {
+		PooledConnectionSource result = connectionSource;
+		if (result == null) {
+			synchronized (DbConnection.class) {
+				result = connectionSource;
+				if (result == null) {
+					try {
+						result = createConnectionSource(Configuration.getInstance());
+						connectionSource = result;
+					} catch (SQLException e) {
+						LOGGER.log(Level.SEVERE, e.getMessage(), e);
+						return null;
+					}
 				}
 			}
 		}
-		return connectionSource;
+		return result;
+	}
+
+	private static PooledConnectionSource createConnectionSource(Configuration config) throws SQLException {
+		String jdbcUrl = config.get("jdbcUrl");
+		int readPoolSize = config.getInt("jdbcPoolSize", 8);
+		int writePoolSize = config.getInt("jdbcWritePoolSize", 1);
+		long maxWait = config.getLong("jdbcPoolMaxWait", 10000);
+		long checkInterval = config.getLong("jdbcPoolCheckInterval", 30000);
+		long maxAge = config.getLong("jdbcPoolMaxAge", 1800000);
+
+		SqlitePragmas pragmas = SqlitePragmas.isSqlite(jdbcUrl) ? new SqlitePragmas(config) : null;
+
+		PooledConnectionSource source = new PooledConnectionSource(jdbcUrl, readPoolSize, writePoolSize, maxWait,
+				checkInterval, maxAge, pragmas);
+		LOGGER.info("Opened connection pool for " + jdbcUrl + " (" + readPoolSize + " read, " + writePoolSize
+				+ " write connections)");
+		if (pragmas != null) {
+			LOGGER.info("SQLite settings in effect: " + source.describePragmas());
+		}
+		return source;
+	}
+
+	/**
+	 * Closes all pooled connections, e.g. when the application is undeployed.
+	 */
+	public static synchronized void close() {
+		if (connectionSource != null) {
+			LOGGER.info("Closing connection pool, " + connectionSource.getStatistics());
+			connectionSource.closeQuietly();
+			connectionSource = null;
+		}
 	}
 }
@@ -0,0 +1,85 @@
+/*
+ * Copyright 2022 dass IT GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.dassit.meetingsmanager;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import com.vaadin.flow.shared.Registration;
+
+/**
+ * Delivers events to all subscribers in the JVM, e.g. from the services
+ * to the views of every open browser window. Events are delivered in the
+ * publishing thread; subscribers that update a UI have to use UI.access().
+ */
+public class EventBus {
+	private static final EventBus instance = new EventBus();
+	private static final Logger LOGGER = Logger.getLogger(EventBus.class.getName());
+
+	private final List<Subscription<?>> subscriptions = new CopyOnWriteArrayList<Subscription<?>>();
+
+	public static EventBus getInstance() {
+		return instance;
+	}
+
+	/**
+	 * Registers a listener for all events of the given class and its subclasses.
+	 *
+	 * @return a registration to remove the listener again
+	 */
+	public <E> Registration subscribe(Class<E> eventType, Consumer<? super E> listener) {
+		final Subscription<E> subscription = new Subscription<E>(eventType, listener);
+		subscriptions.add(subscription);
+		return () -> subscriptions.remove(subscription);
+	}
+
+	/**
+	 * Delivers an event to the subscribed listeners. A failing listener
+	 * does not keep the event from the others.
+	 */
+	public void publish(Object event) {
+		for (Subscription<?> subscription : subscriptions) {
+			try {
+				subscription.deliver(event);
+			} catch (RuntimeException e) {
+				LOGGER.log(Level.WARNING, e.getMessage(), e);
+			}
+		}
+	}
+
+	public int getSubscriberCount() {
+		return subscriptions.size();
+	}
+
+	private static class Subscription<E> {
+		private final Class<E> eventType;
+		private final Consumer<? super E> listener;
+
+		Subscription(Class<E> eventType, Consumer<? super E> listener) {
+			this.eventType = eventType;
+			this.listener = listener;
+		}
+
+		void deliver(Object event) {
+			if (eventType.isInstance(event)) {
+				listener.accept(eventType.cast(event));
+			}
+		}
+	}
+}
@@ -0,0 +1,171 @@
+/*
+ * Copyright 2022 dass IT GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.dassit.meetingsmanager;
+
+import java.io.IOException;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+/**
+ * Serves the meetings of a room, a resource or a participant as
+ * iCalendar feed for calendar clients:
+ * /feeds/room/&lt;room&gt;.ics, /feeds/resource/&lt;resource&gt;.ics and
+ * /feeds/participant/&lt;uid&gt;.ics, with the meetings from the start
+ * of the day feedPastDays (default 30) days ago on.
+ * The entity tag and Last-Modified header are taken from the data version
+ * of the {@link MeetingService} and that day, so a poll of an unchanged
+ * feed is answered with 304 from memory. The entity tag is weak, as the
+ * DTSTAMP of an event changes when it is rebuilt. Declared in web.xml.
+ */
+public class FeedServlet extends HttpServlet {
+	private static final long serialVersionUID = 1L;
+
+	/* distinguishes the entity tags of this run from those of earlier runs */
+	private static final String BOOT = Long.toString(System.currentTimeMillis(), 36);
+	private static final Instant END_OF_TIME = Instant.ofEpochMilli(Long.MAX_VALUE);
+
+	@Override
+	protected void doGet(HttpServletRequest req, HttpServletResponse resp) throws ServletException, IOException {
+		String[] feed = parse(req.getPathInfo());
+		if (feed == null) {
+			resp.sendError(HttpServletResponse.SC_NOT_FOUND);
+			return;
+		}
+		String type = feed[0];
+		String name = feed[1];
+		Configuration config = Configuration.getInstance();
+		if (("room".equals(type) && !config.getRooms().contains(name))
+				|| ("resource".equals(type) && !config.getResources().contains(name))) {
+			resp.sendError(HttpServletResponse.SC_NOT_FOUND);
+			return;
+		}
+
+		// the window moves once a day, so the content changes at midnight as well
+		LocalDate today = LocalDate.now(MeetingService.ZONE);
+		LocalDate firstDay = today.minusDays(config.getInt("feedPastDays", 30));
+		Instant from = firstDay.atStartOfDay(MeetingService.ZONE).toInstant();
+
+		MeetingService meetingService = MeetingService.getInstance();
+		String etag = "W/\"" + BOOT + "-" + meetingService.getDataVersion() + "-" + firstDay + "\"";
+		long modified = Math.max(meetingService.getLastModified(),
+				today.atStartOfDay(MeetingService.ZONE).toInstant().toEpochMilli());
+		resp.setHeader("ETag", etag);
+		resp.setDateHeader("Last-Modified", lastModifiedHeader(modified));
+		resp.setHeader("Cache-Control", "no-cache");
+		if (isNotModified(req, etag, modified)) {
+			resp.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+			return;
+		}
+
+		List<Meeting> meetings;
+		String title;
+		if ("room".equals(type)) {
+			meetings = meetingService.findInRoom(name, from, END_OF_TIME);
+			title = "Raum " + name;
+		} else if ("resource".equals(type)) {
+			meetings = meetingService.findUsingResource(name, from, END_OF_TIME);
+			title = "Ressource " + name;
+		} else {
+			Participant p = ParticipantService.getInstance().getByUid(name);
+			if (p == null) {
+				resp.sendError(HttpServletResponse.SC_NOT_FOUND);
+				return;
+			}
+			meetings = new ArrayList<Meeting>();
+			for (Meeting m : meetingService.findByParticipant(p)) {
+				if (m.getEnd() != null && m.getEnd().toInstant().isAfter(from)) {
+					meetings.add(m);
+				}
+			}
+			title = "Termine von " + (p.getDisplayName() != null ? p.getDisplayName() : name);
+		}
+
+		resp.setContentType("text/calendar; charset=utf-8");
+		IcsCache.getInstance().write(resp.getOutputStream(), title, meetings);
+	}
+
+	/**
+	 * @return the type and name of the feed, or null if the path does not
+	 *         denote one
+	 */
+	private static String[] parse(String path) {
+		if (path == null) {
+			return null;
+		}
+		int slash = path.indexOf('/', 1);
+		if (slash < 0 || slash == path.length() - 1) {
+			return null;
+		}
+		String type = path.substring(1, slash);
+		String name = path.substring(slash + 1);
+		if (name.endsWith(".ics")) {
+			name = name.substring(0, name.length() - 4);
+		}
+		if (!type.equals("room") && !type.equals("resource") && !type.equals("participant")) {
+			return null;
+		}
+		return new String[] { type, name };
+	}
+
+	/**
+	 * HTTP dates have a resolution of seconds. Once the second of the last
+	 * change has passed, the end of that second is sent, otherwise its
+	 * start, so a later change in the same second is never taken for the
+	 * sent state (see {@link #isNotModified}).
+	 */
+	private static long lastModifiedHeader(long modified) {
+		long second = modified / 1000 * 1000;
+		return second + 1000 <= System.currentTimeMillis() ? second + 1000 : second;
+	}
+
+	private static String opaque(String tag) {
+		return tag.startsWith("W/") ? tag.substring(2) : tag;
+	}
+
+	/**
+	 * Evaluates If-None-Match (weak comparison) or, if the client sent no
+	 * entity tag, If-Modified-Since.
+	 *
+	 * @param modified the time of the last change in milliseconds
+	 */
+	private static boolean isNotModified(HttpServletRequest req, String etag, long modified) {
+		String ifNoneMatch = req.getHeader("If-None-Match");
+		if (ifNoneMatch != null) {
+			for (String tag : ifNoneMatch.split(",")) {
+				tag = tag.trim();
+				if (opaque(tag).equals(opaque(etag)) || tag.equals("*")) {
+					return true;
+				}
+			}
+			return false;
+		}
+		try {
+			long since = req.getDateHeader("If-Modified-Since");
+			// only if the change is strictly older than the whole second
+			return since >= 0 && modified < since;
+		} catch (IllegalArgumentException e) {
+			// not a date
+			return false;
+		}
+	}
+}
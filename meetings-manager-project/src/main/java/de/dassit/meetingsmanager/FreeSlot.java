@@ -0,0 +1,69 @@
+/*
+ * Copyright 2022 dass IT GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.dassit.meetingsmanager;
+
+import java.time.Duration;
+import java.time.Instant;
+
+/**
+ * A time window in which the requested participants are free, together
+ * with a room and resource that are free during the whole window,
+ * see {@link MeetingService#findFreeSlots}.
+ */
+public class FreeSlot {
+	private final Instant start;
+	private final Instant end;
+	private final String room;
+	private final String resource;
+
+	public FreeSlot(Instant start, Instant end, String room, String resource) {
+		this.start = start;
+		this.end = end;
+		this.room = room;
+		this.resource = resource;
+	}
+
+	public Instant getStart() {
+		return start;
+	}
+
+	public Instant getEnd() {
+		return end;
+	}
+
+	public Duration getDuration() {
+		return Duration.between(start, end);
+	}
+
+	/**
+	 * @return the free room, or null if no rooms were requested
+	 */
+	public String getRoom() {
+		return room;
+	}
+
+	/**
+	 * @return the free resource, or null if no resources were requested
+	 */
+	public String getResource() {
+		return resource;
+	}
+
+	@Override
+	public String toString() {
+		return start + " - " + end + " " + room + "/" + resource;
+	}
+}
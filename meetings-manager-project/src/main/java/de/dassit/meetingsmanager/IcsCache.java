@@ -0,0 +1,133 @@
+/*
+ * Copyright 2022 dass IT GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.dassit.meetingsmanager;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.util.Collection;
+import java.util.Date;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+
+/**
+ * Keeps the iCalendar data of every meeting, so the invitations to all
+ * recipients, downloads and feeds share one copy. An entry belongs to
+ * the cached instance of a meeting version (see {@link Meeting#freeze()});
+ * it is dropped when the {@link MeetingService} publishes a change of
+ * the meeting and rebuilt on the next request.
+ */
+public class IcsCache {
+	private static IcsCache instance;
+
+	private final ConcurrentHashMap<Integer, Entry> entries = new ConcurrentHashMap<Integer, Entry>();
+
+	public static synchronized IcsCache getInstance() {
+		if (instance == null) {
+			instance = new IcsCache();
+			EventBus.getInstance().subscribe(MeetingChangeEvent.class, new Consumer<MeetingChangeEvent>() {
+				@Override
+				public void accept(MeetingChangeEvent e) {
+					instance.changed(e);
+				}
+			});
+		}
+		return instance;
+	}
+
+	/**
+	 * @return the meeting as VEVENT component
+	 */
+	public byte[] event(Meeting m) {
+		return entry(m).event;
+	}
+
+	/**
+	 * @return a calendar object with only this meeting, e.g. for a mail
+	 *         attachment or a download
+	 */
+	public byte[] document(Meeting m) {
+		return entry(m).document;
+	}
+
+	/**
+	 * Writes a calendar object with the meetings to a stream.
+	 *
+	 * @param name the name shown by calendar clients, may be null
+	 */
+	public void write(OutputStream out, String name, Collection<Meeting> meetings) throws IOException {
+		IcsWriter writer = new IcsWriter(out);
+		writer.beginCalendar(name);
+		for (Meeting m : meetings) {
+			out.write(event(m));
+		}
+		writer.endCalendar();
+	}
+
+	public int size() {
+		return entries.size();
+	}
+
+	private Entry entry(Meeting m) {
+		Entry entry = m.getId() == null ? null : entries.get(m.getId());
+		if (entry != null && entry.meeting == m) {
+			return entry;
+		}
+		entry = new Entry(m);
+		if (m.getId() != null && m.isFrozen()) {
+			// only cached instances cannot change any more
+			entries.put(m.getId(), entry);
+		}
+		return entry;
+	}
+
+	private void changed(MeetingChangeEvent e) {
+		if (e.getType() == ChangeEvent.Type.RELOADED) {
+			entries.clear();
+		} else if (e.getItem() != null && e.getItem().getId() != null) {
+			entries.remove(e.getItem().getId());
+		}
+	}
+
+	private static class Entry {
+		final Meeting meeting;
+		final byte[] event;
+		final byte[] document;
+
+		Entry(Meeting m) {
+			meeting = m;
+			try {
+				ByteArrayOutputStream out = new ByteArrayOutputStream(1024);
+				IcsWriter writer = new IcsWriter(out);
+				if (m.getStart() != null && m.getEnd() != null) {
+					writer.event(m, new Date());
+				}
+				// else left out of feeds and an empty calendar as document
+				event = out.toByteArray();
+
+				out.reset();
+				writer.beginCalendar(null);
+				out.write(event);
+				writer.endCalendar();
+				document = out.toByteArray();
+			} catch (IOException e) {
+				// not thrown by a ByteArrayOutputStream
+				throw new UncheckedIOException(e);
+			}
+		}
+	}
+}
@@ -0,0 +1,190 @@
+/*
+ * Copyright 2022 dass IT GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.dassit.meetingsmanager;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.text.SimpleDateFormat;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.Date;
+import java.util.TimeZone;
+
+/**
+ * Writes meetings as iCalendar data (RFC 5545) directly to a stream:
+ * content lines end with CRLF and are folded after 75 octets, without
+ * splitting UTF-8 sequences; text values are escaped. Callers usually
+ * go through {@link IcsCache}, which keeps the bytes of every meeting.
+ */
+public class IcsWriter {
+	private static final int MAX_LINE_OCTETS = 75;
+	private static final byte[] CRLF = { '\r', '\n' };
+	private static final byte[] FOLD = { '\r', '\n', ' ' };
+	private static final DateTimeFormatter UTC = DateTimeFormatter.ofPattern("yyyyMMdd'T'HHmmss'Z'")
+			.withZone(ZoneOffset.UTC);
+
+	private final OutputStream out;
+
+	public IcsWriter(OutputStream out) {
+		this.out = out;
+	}
+
+	/**
+	 * Writes the start of a calendar object.
+	 *
+	 * @param name the name shown by calendar clients, may be null
+	 */
+	public void beginCalendar(String name) throws IOException {
+		line("BEGIN:VCALENDAR");
+		line("VERSION:2.0");
+		line("PRODID:-//MeetingsManager//dass-it.de//");
+		line("CALSCALE:GREGORIAN");
+		if (name != null) {
+			line("X-WR-CALNAME:" + text(name));
+		}
+	}
+
+	public void endCalendar() throws IOException {
+		line("END:VCALENDAR");
+	}
+
+	/**
+	 * Writes a meeting as VEVENT. The sequence number is the version of
+	 * the meeting, so clients replace older copies of the event.
+	 *
+	 * @param stamp the creation time of the data (DTSTAMP)
+	 * @throws IllegalArgumentException if the meeting has no start or end,
+	 *                                  which an event requires
+	 */
+	public void event(Meeting m, Date stamp) throws IOException {
+		if (m.getStart() == null || m.getEnd() == null) {
+			throw new IllegalArgumentException("Meeting " + m.getId() + " has no start or end");
+		}
+		Participant organizer = m.getOrganizer();
+		String organizerEmail = organizer == null ? null : organizer.getEmail();
+
+		line("BEGIN:VEVENT");
+		line("UID:meeting-" + m.getId() + "@meetingsmanager");
+		line("DTSTAMP:" + utc(stamp));
+		line("SEQUENCE:" + m.getVersion());
+		line("DTSTART:" + utc(m.getStart()));
+		line("DTEND:" + utc(m.getEnd()));
+		line("SUMMARY:" + text("Videokonferenz " + valueOf(m.getName())));
+		line("DESCRIPTION:" + text(description(m)));
+		if (m.getRoom() != null) {
+			line("LOCATION:" + text(m.getRoom()));
+		}
+		if (m.getResource() != null) {
+			line("RESOURCES:" + text(m.getResource()));
+		}
+		if (m.getUrl() != null && !m.getUrl().isEmpty()) {
+			line("URL:" + m.getUrl());
+		}
+		line("PRIORITY:5");
+		if (organizerEmail != null && !organizerEmail.isEmpty()) {
+			line("ORGANIZER" + commonName(organizer) + ":mailto:" + organizerEmail);
+		}
+		for (Participant p : m.getParticipants()) {
+			if (p.getEmail() != null && !p.getEmail().isEmpty()) {
+				line("ATTENDEE" + commonName(p) + ";ROLE=REQ-PARTICIPANT:mailto:" + p.getEmail());
+			}
+		}
+		line("END:VEVENT");
+	}
+
+	/**
+	 * Writes a content line, folded after 75 octets. Continuation lines
+	 * start with a space, which counts towards their length.
+	 */
+	private void line(String content) throws IOException {
+		byte[] bytes = content.getBytes(StandardCharsets.UTF_8);
+		int start = 0;
+		int limit = MAX_LINE_OCTETS;
+		while (bytes.length - start > limit) {
+			int end = start + limit;
+			// do not split a multi-byte character
+			while ((bytes[end] & 0xC0) == 0x80) {
+				end--;
+			}
+			out.write(bytes, start, end - start);
+			out.write(FOLD);
+			start = end;
+			limit = MAX_LINE_OCTETS - 1;
+		}
+		out.write(bytes, start, bytes.length - start);
+		out.write(CRLF);
+	}
+
+	/**
+	 * @return the invitation text of meetingsdb.py
+	 */
+	private static String description(Meeting m) {
+		Participant organizer = m.getOrganizer();
+		String organizerEmail = organizer == null ? "" : valueOf(organizer.getEmail());
+		SimpleDateFormat f = new SimpleDateFormat("dd.MM.yyyy");
+		f.setTimeZone(TimeZone.getTimeZone(MeetingService.ZONE));
+		return "Sie wurden von " + organizerEmail + " zu einer Videokonferenz am " + f.format(m.getStart())
+				+ " eingeladen.\n" + "Um der Konferenz beizutreten, folgen Sie bitte diesem Link:\n "
+				+ valueOf(m.getUrl());
+	}
+
+	/**
+	 * @return the CN parameter with the display name, or an empty string
+	 */
+	private static String commonName(Participant p) {
+		String name = p.getDisplayName();
+		if (name == null || name.isEmpty()) {
+			return "";
+		}
+		// parameter values cannot contain quotes or control characters
+		return ";CN=\"" + name.replaceAll("[\"\\p{Cntrl}]", "") + "\"";
+	}
+
+	/**
+	 * @return a TEXT value with backslash, semicolon, comma and line
+	 *         breaks escaped
+	 */
+	static String text(String value) {
+		StringBuilder sb = new StringBuilder(value.length() + 8);
+		for (int i = 0; i < value.length(); i++) {
+			char c = value.charAt(i);
+			switch (c) {
+			case '\\':
+			case ';':
+			case ',':
+				sb.append('\\').append(c);
+				break;
+			case '\n':
+				sb.append("\\n");
+				break;
+			case '\r':
+				break;
+			default:
+				sb.append(c);
+			}
+		}
+		return sb.toString();
+	}
+
+	private static String utc(Date date) {
+		return UTC.format(date.toInstant());
+	}
+
+	private static String valueOf(String s) {
+		return s == null ? "" : s;
+	}
+}
@@ -0,0 +1,189 @@
+/*
+ * Copyright 2022 dass IT GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.dassit.meetingsmanager;
+
+import java.util.Arrays;
+
+/**
+ * An immutable set of time intervals with ids, e.g. the bookings of one
+ * room. The intervals are kept in an array sorted by start time, which
+ * is used as an implicit balanced search tree: the middle element of
+ * every range is the root of the subtree for that range, and maxEnd
+ * holds the latest end time within each subtree. Finding the intervals
+ * overlapping a given time span takes O(log n + k) for k results.
+ * Changes return a new index and take O(n).
+ */
+public final class IntervalIndex {
+	public static final IntervalIndex EMPTY = new IntervalIndex(new long[0], new long[0], new int[0]);
+
+	private final long[] starts;
+	private final long[] ends;
+	private final int[] ids;
+	private final long[] maxEnd;
+
+	private IntervalIndex(long[] starts, long[] ends, int[] ids) {
+		this.starts = starts;
+		this.ends = ends;
+		this.ids = ids;
+		this.maxEnd = new long[ids.length];
+		computeMaxEnd(0, ids.length);
+	}
+
+	/**
+	 * Builds an index from unsorted intervals. The arrays must have
+	 * the same length and are not changed.
+	 */
+	public static IntervalIndex of(int[] ids, long[] starts, long[] ends) {
+		Integer[] order = new Integer[ids.length];
+		for (int i = 0; i < order.length; i++) {
+			order[i] = i;
+		}
+		Arrays.sort(order, (a, b) -> starts[a] != starts[b] ? Long.compare(starts[a], starts[b])
+				: Integer.compare(ids[a], ids[b]));
+
+		long[] s = new long[ids.length];
+		long[] e = new long[ids.length];
+		int[] d = new int[ids.length];
+		for (int i = 0; i < order.length; i++) {
+			s[i] = starts[order[i]];
+			e[i] = ends[order[i]];
+			d[i] = ids[order[i]];
+		}
+		return new IntervalIndex(s, e, d);
+	}
+
+	private long computeMaxEnd(int lo, int hi) {
+		if (lo >= hi) {
+			return Long.MIN_VALUE;
+		}
+		int mid = (lo + hi) >>> 1;
+		long max = Math.max(ends[mid], Math.max(computeMaxEnd(lo, mid), computeMaxEnd(mid + 1, hi)));
+		maxEnd[mid] = max;
+		return max;
+	}
+
+	/**
+	 * @return the ids of the intervals overlapping [from, to), ordered by start
+	 */
+	public int[] overlapping(long from, long to) {
+		IntBuffer result = new IntBuffer();
+		collect(0, ids.length, from, to, result);
+		return result.toArray();
+	}
+
+	private void collect(int lo, int hi, long from, long to, IntBuffer result) {
+		if (lo >= hi) {
+			return;
+		}
+		int mid = (lo + hi) >>> 1;
+		if (maxEnd[mid] <= from) {
+			// everything in this subtree ends before the span
+			return;
+		}
+		collect(lo, mid, from, to, result);
+		if (starts[mid] >= to) {
+			// this interval and the right subtree start after the span
+			return;
+		}
+		if (ends[mid] > from) {
+			result.add(ids[mid]);
+		}
+		collect(mid + 1, hi, from, to, result);
+	}
+
+	/**
+	 * @return a new index that also contains the interval, replacing an
+	 *         interval with the same id
+	 */
+	public IntervalIndex with(int id, long start, long end) {
+		IntervalIndex base = without(id);
+		int n = base.ids.length;
+		int pos = 0;
+		// binary search for the first interval starting later
+		int hi = n;
+		while (pos < hi) {
+			int mid = (pos + hi) >>> 1;
+			if (base.starts[mid] <= start) {
+				pos = mid + 1;
+			} else {
+				hi = mid;
+			}
+		}
+
+		long[] s = new long[n + 1];
+		long[] e = new long[n + 1];
+		int[] d = new int[n + 1];
+		System.arraycopy(base.starts, 0, s, 0, pos);
+		System.arraycopy(base.ends, 0, e, 0, pos);
+		System.arraycopy(base.ids, 0, d, 0, pos);
+		s[pos] = start;
+		e[pos] = end;
+		d[pos] = id;
+		System.arraycopy(base.starts, pos, s, pos + 1, n - pos);
+		System.arraycopy(base.ends, pos, e, pos + 1, n - pos);
+		System.arraycopy(base.ids, pos, d, pos + 1, n - pos);
+		return new IntervalIndex(s, e, d);
+	}
+
+	/**
+	 * @return a new index without the interval with the given id, or this
+	 *         index if it does not contain the id
+	 */
+	public IntervalIndex without(int id) {
+		int pos = -1;
+		for (int i = 0; i < ids.length; i++) {
+			if (ids[i] == id) {
+				pos = i;
+				break;
+			}
+		}
+		if (pos < 0) {
+			return this;
+		}
+		int n = ids.length - 1;
+		long[] s = new long[n];
+		long[] e = new long[n];
+		int[] d = new int[n];
+		System.arraycopy(starts, 0, s, 0, pos);
+		System.arraycopy(ends, 0, e, 0, pos);
+		System.arraycopy(ids, 0, d, 0, pos);
+		System.arraycopy(starts, pos + 1, s, pos, n - pos);
+		System.arraycopy(ends, pos + 1, e, pos, n - pos);
+		System.arraycopy(ids, pos + 1, d, pos, n - pos);
+		return new IntervalIndex(s, e, d);
+	}
+
+	public int size() {
+		return ids.length;
+	}
+
+	/* a growable int array */
+	private static final class IntBuffer {
+		private int[] values = new int[8];
+		private int size;
+
+		void add(int value) {
+			if (size == values.length) {
+				values = Arrays.copyOf(values, size * 2);
+			}
+			values[size++] = value;
+		}
+
+		int[] toArray() {
+			return Arrays.copyOf(values, size);
+		}
+	}
+}
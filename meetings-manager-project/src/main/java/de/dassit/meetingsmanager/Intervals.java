@@ -0,0 +1,113 @@
+/*
+ * Copyright 2022 dass IT GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.dassit.meetingsmanager;
+
+import java.time.DayOfWeek;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Sweep-line operations on time intervals, given as {start, end} pairs
+ * of milliseconds with the end exclusive.
+ */
+public final class Intervals {
+	private Intervals() {
+	}
+
+	/**
+	 * Merges overlapping and adjacent intervals.
+	 *
+	 * @return disjoint intervals sorted by start
+	 */
+	public static List<long[]> merge(List<long[]> intervals) {
+		List<long[]> sorted = new ArrayList<long[]>(intervals);
+		Collections.sort(sorted, new Comparator<long[]>() {
+			@Override
+			public int compare(long[] o1, long[] o2) {
+				return Long.compare(o1[0], o2[0]);
+			}
+		});
+
+		List<long[]> result = new ArrayList<long[]>();
+		long[] current = null;
+		for (long[] interval : sorted) {
+			if (current != null && interval[0] <= current[1]) {
+				current[1] = Math.max(current[1], interval[1]);
+			} else {
+				current = new long[] { interval[0], interval[1] };
+				result.add(current);
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Removes the busy times from the free windows.
+	 *
+	 * @param free disjoint intervals sorted by start
+	 * @param busy disjoint intervals sorted by start, see {@link #merge(List)}
+	 * @return the remaining free intervals, sorted by start
+	 */
+	public static List<long[]> subtract(List<long[]> free, List<long[]> busy) {
+		List<long[]> result = new ArrayList<long[]>();
+		int b = 0;
+		for (long[] window : free) {
+			long start = window[0];
+			// busy intervals ending before this window cannot matter for later windows either
+			while (b < busy.size() && busy.get(b)[1] <= start) {
+				b++;
+			}
+			int i = b;
+			while (i < busy.size() && busy.get(i)[0] < window[1]) {
+				if (busy.get(i)[0] > start) {
+					result.add(new long[] { start, busy.get(i)[0] });
+				}
+				start = Math.max(start, busy.get(i)[1]);
+				i++;
+			}
+			if (start < window[1]) {
+				result.add(new long[] { start, window[1] });
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * @return the working hours on weekdays between from and to
+	 */
+	public static List<long[]> businessHours(Instant from, Instant to, LocalTime open, LocalTime close,
+			ZoneId zone) {
+		List<long[]> result = new ArrayList<long[]>();
+		LocalDate last = to.atZone(zone).toLocalDate();
+		for (LocalDate day = from.atZone(zone).toLocalDate(); !day.isAfter(last); day = day.plusDays(1)) {
+			if (day.getDayOfWeek() == DayOfWeek.SATURDAY || day.getDayOfWeek() == DayOfWeek.SUNDAY) {
+				continue;
+			}
+			long start = Math.max(day.atTime(open).atZone(zone).toInstant().toEpochMilli(), from.toEpochMilli());
+			long end = Math.min(day.atTime(close).atZone(zone).toInstant().toEpochMilli(), to.toEpochMilli());
+			if (start < end) {
+				result.add(new long[] { start, end });
+			}
+		}
+		return result;
+	}
+}
@@ -0,0 +1,155 @@
+/*
+ * Copyright 2022 dass IT GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.dassit.meetingsmanager;
+
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.TimeZone;
+import java.util.logging.Logger;
+
+import javax.activation.DataHandler;
+import javax.mail.Message;
+import javax.mail.MessagingException;
+import javax.mail.internet.InternetAddress;
+import javax.mail.internet.MimeBodyPart;
+import javax.mail.internet.MimeMessage;
+import javax.mail.internet.MimeMultipart;
+import javax.mail.util.ByteArrayDataSource;
+
+/**
+ * Creates the invitations for a meeting: one mail to every participant
+ * and one with the access data to the organizer, each with the meeting
+ * as iCalendar attachment. The texts are those of meetingsdb.py.
+ * The mails are sent by the {@link NotificationDispatcher}.
+ */
+public class InvitationMailer {
+	private static final Logger LOGGER = Logger.getLogger(InvitationMailer.class.getName());
+
+	private static final String ORGANIZER_SUBJECT = "Organisator einer Videokonferenz";
+	private static final String ORGANIZER_TEMPLATE = "\n"
+			+ "Sie sind der Organisator einer Videokonferenz am ${datum}.\n\n"
+			+ "Zum Beginn der Konferenz folgen Sie bitte diesem Link:\n"
+			+ "  ${url}\n\n"
+			+ "Ihre Jitsi-Benutzerkennung: ${organisator_uid}\n"
+			+ "Ihr Passwort: ${organisator_password}\n\n"
+			+ "Die Benutzerkennung ist nur an diesem Datum gültig.\n";
+
+	private static final String PARTICIPANT_SUBJECT = "Einladung zu einer Videokonferenz";
+	private static final String PARTICIPANT_TEMPLATE = "\n"
+			+ "Sie wurden von ${organisator_email} zu einer Videokonferenz am ${datum} eingeladen.\n\n"
+			+ "Zum Beitreten der Konferenz folgen Sie bitte diesem Link:\n"
+			+ "  ${url}\n";
+
+	private static final String ATTACHMENT_NAME = "Konferenz.ics";
+
+	private final MailTransport transport;
+	private final String sender;
+
+	public InvitationMailer(MailTransport transport, String sender) {
+		this.transport = transport;
+		this.sender = sender;
+	}
+
+	/**
+	 * @return a mailer for the setting mailSender of the configuration,
+	 *         or null if no sender is configured
+	 */
+	public static InvitationMailer fromConfiguration(MailTransport transport) {
+		String sender = Configuration.getInstance().get("mailSender");
+		if (sender == null || sender.trim().isEmpty()) {
+			LOGGER.severe("mailSender is not configured in the configuration file, no invitations are sent;"
+					+ " new meetings stay in the notification outbox until it is set");
+			return null;
+		}
+		return new InvitationMailer(transport, sender.trim());
+	}
+
+	/**
+	 * @return one pending delivery for every participant with a mail
+	 *         address and one for the organizer
+	 */
+	public List<MailDelivery> deliveries(Meeting m) {
+		List<MailDelivery> result = new ArrayList<MailDelivery>();
+		for (Participant p : m.getParticipants()) {
+			if (p.getEmail() != null && !p.getEmail().isEmpty()) {
+				result.add(new MailDelivery(m.getId(), p.getEmail(), MailDelivery.Kind.PARTICIPANT));
+			}
+		}
+		Participant organizer = m.getOrganizer();
+		if (organizer != null && organizer.getEmail() != null && !organizer.getEmail().isEmpty()) {
+			result.add(new MailDelivery(m.getId(), organizer.getEmail(), MailDelivery.Kind.ORGANIZER));
+		}
+		return result;
+	}
+
+	/**
+	 * Creates the mail of a delivery.
+	 *
+	 * @param calendar the attachment, see {@link IcsCache#document(Meeting)}
+	 */
+	public MimeMessage createMessage(Meeting m, MailDelivery delivery, byte[] calendar) throws MessagingException {
+		Participant organizer = m.getOrganizer();
+		String organizerEmail = organizer == null ? "" : valueOf(organizer.getEmail());
+		String datum = format("dd.MM.yyyy", m.getStart());
+
+		if (delivery.getKind() == MailDelivery.Kind.ORGANIZER) {
+			String text = ORGANIZER_TEMPLATE.replace("${datum}", datum).replace("${url}", valueOf(m.getUrl()))
+					.replace("${organisator_uid}", organizer == null ? "" : valueOf(organizer.getUid()))
+					.replace("${organisator_password}", organizer == null ? "" : valueOf(organizer.getPassword()));
+			return createMessage(delivery.getRecipient(), ORGANIZER_SUBJECT, text, calendar);
+		}
+		String text = PARTICIPANT_TEMPLATE.replace("${organisator_email}", organizerEmail)
+				.replace("${datum}", datum).replace("${url}", valueOf(m.getUrl()));
+		return createMessage(delivery.getRecipient(), PARTICIPANT_SUBJECT, text, calendar);
+	}
+
+	private MimeMessage createMessage(String recipient, String subject, String text, byte[] calendar)
+			throws MessagingException {
+		MimeMessage message = transport.createMessage();
+		message.setFrom(new InternetAddress(sender));
+		message.setRecipient(Message.RecipientType.TO, new InternetAddress(recipient));
+		message.setSubject(subject, "utf-8");
+		message.setSentDate(new Date());
+
+		MimeBodyPart textPart = new MimeBodyPart();
+		textPart.setText(text, "utf-8");
+		MimeBodyPart calendarPart = new MimeBodyPart();
+		calendarPart.setDataHandler(new DataHandler(new ByteArrayDataSource(calendar, "text/calendar; charset=utf-8")));
+		calendarPart.setFileName(ATTACHMENT_NAME);
+
+		MimeMultipart content = new MimeMultipart();
+		content.addBodyPart(textPart);
+		content.addBodyPart(calendarPart);
+		message.setContent(content);
+		message.saveChanges();
+		return message;
+	}
+
+	private static String format(String pattern, Date date) {
+		if (date == null) {
+			return "";
+		}
+		SimpleDateFormat f = new SimpleDateFormat(pattern);
+		f.setTimeZone(TimeZone.getTimeZone(MeetingService.ZONE));
+		return f.format(date);
+	}
+
+	private static String valueOf(String s) {
+		return s == null ? "" : s;
+	}
+}
@@ -0,0 +1,120 @@
+/*
+ * Copyright 2022 dass IT GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.dassit.meetingsmanager;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Properties;
+import java.util.Set;
+import java.util.logging.Logger;
+
+import javax.mail.Address;
+import javax.mail.MessagingException;
+import javax.mail.SendFailedException;
+import javax.mail.Session;
+import javax.mail.internet.InternetAddress;
+import javax.mail.internet.MimeMessage;
+
+/**
+ * An in-process stand-in for the mail server: keeps the sent messages in
+ * memory instead of delivering them. Rejected recipients and unreachable
+ * servers can be simulated, so the retries and the giving up of the
+ * {@link NotificationDispatcher} can be tried without an SMTP server.
+ * Used instead of {@link SmtpTransport} with mailTransport=local.
+ */
+public class LocalMailTransport implements MailTransport {
+	private static final Logger LOGGER = Logger.getLogger(LocalMailTransport.class.getName());
+
+	private final Session session = Session.getInstance(new Properties());
+	private final List<MimeMessage> sent = new ArrayList<MimeMessage>();
+	private final Set<String> rejected = new HashSet<String>();
+	private int failingConnects;
+
+	/**
+	 * Makes the server reject a recipient, like an unknown mailbox.
+	 */
+	public synchronized void reject(String address) {
+		rejected.add(address.toLowerCase(Locale.ROOT));
+	}
+
+	/**
+	 * Makes the next connection attempts fail, like an unreachable server.
+	 */
+	public synchronized void failConnects(int count) {
+		failingConnects = count;
+	}
+
+	/**
+	 * @return the messages sent so far
+	 */
+	public synchronized List<MimeMessage> getSent() {
+		return new ArrayList<MimeMessage>(sent);
+	}
+
+	@Override
+	public MimeMessage createMessage() {
+		return new MimeMessage(session);
+	}
+
+	@Override
+	public synchronized Connection connect() throws MessagingException {
+		if (failingConnects > 0) {
+			failingConnects--;
+			throw new MessagingException("connection refused (simulated)");
+		}
+		return new Connection() {
+			private boolean open = true;
+
+			@Override
+			public void send(MimeMessage message) throws MessagingException {
+				if (!open) {
+					throw new MessagingException("connection closed");
+				}
+				deliver(message);
+			}
+
+			@Override
+			public boolean isConnected() {
+				return open;
+			}
+
+			@Override
+			public void close() {
+				open = false;
+			}
+		};
+	}
+
+	private synchronized void deliver(MimeMessage message) throws MessagingException {
+		List<Address> invalid = new ArrayList<Address>();
+		for (Address address : message.getAllRecipients()) {
+			String mailbox = address instanceof InternetAddress ? ((InternetAddress) address).getAddress()
+					: address.toString();
+			if (rejected.contains(mailbox.toLowerCase(Locale.ROOT))) {
+				invalid.add(address);
+			}
+		}
+		if (!invalid.isEmpty()) {
+			throw new SendFailedException("550 mailbox unavailable (simulated)", null, new Address[0],
+					new Address[0], invalid.toArray(new Address[invalid.size()]));
+		}
+		sent.add(message);
+		LOGGER.info("Mail to " + Arrays.toString(message.getAllRecipients()) + " kept locally");
+	}
+}
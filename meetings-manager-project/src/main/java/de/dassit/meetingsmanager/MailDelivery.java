@@ -0,0 +1,132 @@
+/*
+ * Copyright 2022 dass IT GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.dassit.meetingsmanager;
+
+import com.j256.ormlite.field.DatabaseField;
+import com.j256.ormlite.table.DatabaseTable;
+
+/**
+ * DAO class for the delivery state of one invitation mail to one
+ * recipient, see {@link NotificationDispatcher}.
+ */
+@DatabaseTable(tableName = "mail_delivery")
+public class MailDelivery {
+	public enum Kind {
+		PARTICIPANT, ORGANIZER
+	}
+
+	public enum State {
+		PENDING, SENT, FAILED
+	}
+
+	@DatabaseField(generatedId = true)
+	int id;
+	@DatabaseField(columnName = "meeting_id", canBeNull = false)
+	int meetingId;
+	@DatabaseField(canBeNull = false)
+	String recipient;
+	@DatabaseField(canBeNull = false)
+	Kind kind;
+	@DatabaseField(canBeNull = false)
+	State state;
+	@DatabaseField(canBeNull = false)
+	int attempts;
+	/* time in milliseconds before which the mail is not tried again */
+	@DatabaseField(columnName = "next_attempt", canBeNull = false)
+	long nextAttempt;
+	@DatabaseField(columnName = "last_error")
+	String lastError;
+	@DatabaseField(canBeNull = false)
+	long created;
+	@DatabaseField
+	long sent;
+
+	public MailDelivery() {
+	}
+
+	public MailDelivery(int meetingId, String recipient, Kind kind) {
+		this.meetingId = meetingId;
+		this.recipient = recipient;
+		this.kind = kind;
+		this.state = State.PENDING;
+		this.created = System.currentTimeMillis();
+		this.nextAttempt = created;
+	}
+
+	public int getId() {
+		return id;
+	}
+
+	public int getMeetingId() {
+		return meetingId;
+	}
+
+	public String getRecipient() {
+		return recipient;
+	}
+
+	public Kind getKind() {
+		return kind;
+	}
+
+	public State getState() {
+		return state;
+	}
+
+	public int getAttempts() {
+		return attempts;
+	}
+
+	public long getNextAttempt() {
+		return nextAttempt;
+	}
+
+	public String getLastError() {
+		return lastError;
+	}
+
+	public long getCreated() {
+		return created;
+	}
+
+	public long getSent() {
+		return sent;
+	}
+
+	public void delivered(long time) {
+		this.attempts++;
+		this.state = State.SENT;
+		this.sent = time;
+		this.lastError = null;
+	}
+
+	/**
+	 * Records a failed attempt.
+	 *
+	 * @param error       the reason
+	 * @param nextAttempt the time of the next try in milliseconds, or a
+	 *                    negative value if the mail is given up
+	 */
+	public void failed(String error, long nextAttempt) {
+		this.attempts++;
+		this.lastError = error;
+		if (nextAttempt < 0) {
+			this.state = State.FAILED;
+		} else {
+			this.nextAttempt = nextAttempt;
+		}
+	}
+}
@@ -0,0 +1,118 @@
+/*
+ * Copyright 2022 dass IT GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.dassit.meetingsmanager;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Counters of the mail delivery, updated by the workers of the
+ * {@link NotificationDispatcher}. Registered as MBean while the
+ * dispatcher runs.
+ */
+public class MailMetrics implements MailMetricsMBean {
+	private final AtomicLong queueDepth = new AtomicLong();
+	private final AtomicInteger inFlight = new AtomicInteger();
+	private final AtomicLong sent = new AtomicLong();
+	private final AtomicLong retried = new AtomicLong();
+	private final AtomicLong failed = new AtomicLong();
+	private final AtomicLong totalLatency = new AtomicLong();
+	private final AtomicLong maxLatency = new AtomicLong();
+	private final AtomicLong totalSendTime = new AtomicLong();
+
+	void setQueueDepth(long depth) {
+		queueDepth.set(depth);
+	}
+
+	void claimed(int count) {
+		inFlight.addAndGet(count);
+	}
+
+	void released(int count) {
+		inFlight.addAndGet(-count);
+	}
+
+	/**
+	 * @param latency  time from queueing to sending in milliseconds
+	 * @param sendTime time the server took in milliseconds
+	 */
+	void sent(long latency, long sendTime) {
+		sent.incrementAndGet();
+		totalLatency.addAndGet(latency);
+		totalSendTime.addAndGet(sendTime);
+		long max;
+		do {
+			max = maxLatency.get();
+		} while (latency > max && !maxLatency.compareAndSet(max, latency));
+	}
+
+	void retried() {
+		retried.incrementAndGet();
+	}
+
+	void failed() {
+		failed.incrementAndGet();
+	}
+
+	@Override
+	public long getQueueDepth() {
+		return queueDepth.get();
+	}
+
+	@Override
+	public int getInFlight() {
+		return inFlight.get();
+	}
+
+	@Override
+	public long getSent() {
+		return sent.get();
+	}
+
+	@Override
+	public long getRetried() {
+		return retried.get();
+	}
+
+	@Override
+	public long getFailed() {
+		return failed.get();
+	}
+
+	@Override
+	public long getAverageLatencyMillis() {
+		long count = sent.get();
+		return count == 0 ? 0 : totalLatency.get() / count;
+	}
+
+	@Override
+	public long getMaxLatencyMillis() {
+		return maxLatency.get();
+	}
+
+	@Override
+	public long getAverageSendMillis() {
+		long count = sent.get();
+		return count == 0 ? 0 : totalSendTime.get() / count;
+	}
+
+	@Override
+	public String toString() {
+		return "queue " + getQueueDepth() + ", in flight " + getInFlight() + ", sent " + getSent() + ", retried "
+				+ getRetried() + ", failed " + getFailed() + ", latency avg " + getAverageLatencyMillis()
+				+ " ms max " + getMaxLatencyMillis() + " ms, send avg " + getAverageSendMillis() + " ms";
+	}
+}
@@ -0,0 +1,56 @@
+/*
+ * Copyright 2022 dass IT GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.dassit.meetingsmanager;
+
+/**
+ * Management interface of {@link MailMetrics}, shown by JMX consoles
+ * under de.dassit.meetingsmanager:type=MailMetrics.
+ */
+public interface MailMetricsMBean {
+	/**
+	 * @return the number of mails waiting to be sent, including retries
+	 */
+	long getQueueDepth();
+
+	/**
+	 * @return the number of mails handed to the workers and not finished yet
+	 */
+	int getInFlight();
+
+	long getSent();
+
+	/**
+	 * @return the number of failed attempts that are retried later
+	 */
+	long getRetried();
+
+	/**
+	 * @return the number of mails that have been given up
+	 */
+	long getFailed();
+
+	/**
+	 * @return the average time from saving the meeting to sending a mail
+	 */
+	long getAverageLatencyMillis();
+
+	long getMaxLatencyMillis();
+
+	/**
+	 * @return the average time the server took to accept a mail
+	 */
+	long getAverageSendMillis();
+}
@@ -0,0 +1,55 @@
+/*
+ * Copyright 2022 dass IT GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.dassit.meetingsmanager;
+
+import javax.mail.MessagingException;
+import javax.mail.internet.MimeMessage;
+
+/**
+ * Sends mails over connections that can be used for several messages.
+ * {@link SmtpTransport} sends them to an SMTP server; other
+ * implementations can deliver them to a local stand-in.
+ */
+public interface MailTransport {
+	/**
+	 * @return a new, empty message for this transport
+	 */
+	MimeMessage createMessage();
+
+	/**
+	 * Opens a connection to the mail server.
+	 */
+	Connection connect() throws MessagingException;
+
+	interface Connection extends AutoCloseable {
+		/**
+		 * Sends a message to its recipients.
+		 *
+		 * @throws javax.mail.SendFailedException if the server rejected
+		 *                                        a recipient
+		 */
+		void send(MimeMessage message) throws MessagingException;
+
+		/**
+		 * @return false if the connection has been closed, e.g. by the
+		 *         server after an error
+		 */
+		boolean isConnected();
+
+		@Override
+		void close();
+	}
+}
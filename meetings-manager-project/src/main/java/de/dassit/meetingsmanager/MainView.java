@@ -15,20 +15,28 @@
  */
 package de.dassit.meetingsmanager;
 
+import com.vaadin.flow.component.AttachEvent;
 import com.vaadin.flow.component.Component;
+import com.vaadin.flow.component.DetachEvent;
+import com.vaadin.flow.component.UI;
 import com.vaadin.flow.component.applayout.AppLayout;
 import com.vaadin.flow.component.dependency.CssImport;
 import com.vaadin.flow.component.html.Div;
+import com.vaadin.flow.component.page.Push;
 import com.vaadin.flow.component.tabs.Tab;
 import com.vaadin.flow.component.tabs.Tabs;
 import com.vaadin.flow.router.Route;
 import com.vaadin.flow.server.PWA;
+import com.vaadin.flow.shared.Registration;
 
 /**
  * MainView is the main view.
+ * While attached, it receives the changes made by all sessions from the
+ * {@link EventBus} and pushes them to the browser.
  * @author Sebastian Lederer <sebastian.lederer@dass-it.de>
  */
 @Route("")
+@Push
 @PWA(name = "Meetings-Manager", shortName = "Meetings-Manager", enableInstallPrompt = false)
 @CssImport("./styles/shared-styles.css")
 @CssImport(value = "./styles/vaadin-text-field-styles.css", themeFor = "vaadin-text-field")
@@ -38,6 +46,9 @@ public class MainView extends AppLayout {
 	private MeetingView meetingView = new MeetingView();
 	private ParticipantView participantView = new ParticipantView();
 	private CalendarView calendarView = new CalendarView();
+
+	private Registration meetingRegistration;
+	private Registration participantRegistration;
 	
     public MainView() {
     	super();
@@ -66,4 +77,25 @@ public class MainView extends AppLayout {
     	participantView.setVisible(false);
     	this.setContent(pages);
     }
+
+    @Override
+    protected void onAttach(AttachEvent attachEvent) {
+    	super.onAttach(attachEvent);
+    	UI ui = attachEvent.getUI();
+    	EventBus bus = EventBus.getInstance();
+    	// events arrive in the thread of the session that made the change
+    	meetingRegistration = bus.subscribe(MeetingChangeEvent.class, event -> ui.access(() -> {
+    		meetingView.meetingChanged(event);
+    		calendarView.meetingChanged(event);
+    	}));
+    	participantRegistration = bus.subscribe(ParticipantChangeEvent.class,
+    			event -> ui.access(() -> participantView.participantChanged(event)));
+    }
+
+    @Override
+    protected void onDetach(DetachEvent detachEvent) {
+    	meetingRegistration.remove();
+    	participantRegistration.remove();
+    	super.onDetach(detachEvent);
+    }
 }
@@ -21,8 +21,10 @@ import java.time.LocalDateTime;
 import java.time.LocalTime;
 import java.time.ZoneId;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Calendar;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.Date;
 import java.util.List;
 import java.util.logging.Logger;
@@ -62,16 +64,21 @@ public class Meeting implements Serializable, Cloneable {
 	private Participant organizer;
 	@DatabaseField
 	private boolean notified;
+	@DatabaseField(version = true)
+	private int version;
 	// @ForeignCollectionField(eager=true)
 	private Collection<Participant> participant = new ArrayList<Participant>();
 
+	/* created by the first setName(), not for every meeting read from the database */
 	private String randomKey;
 
+	/* set on the instances shared by MeetingService */
+	private transient boolean frozen;
+
 	private final static String baseUrl = Configuration.getInstance().get("baseUrl");
 
 	public Meeting() {
 		super();
-		randomKey = PasswordGenerator.password(16);
 	}
 
 	public Integer getId() {
@@ -79,14 +86,17 @@ public class Meeting implements Serializable, Cloneable {
 	}
 
 	public void setId(Integer id) {
+		checkFrozen();
 		this.id = id;
 	}
 
 	public void setName(String name) {
+		checkFrozen();
 		this.name = name;
 		String key = name.replaceAll("[^A-Za-z0-9]", "");
-		if (randomKey != null)
-			this.url = baseUrl + key + "-" + randomKey;
+		if (randomKey == null)
+			randomKey = PasswordGenerator.password(16);
+		this.url = baseUrl + key + "-" + randomKey;
 	}
 
 	public String getName() {
@@ -103,6 +113,7 @@ public class Meeting implements Serializable, Cloneable {
 	}
 
 	public void setDatum(LocalDate datum) {
+		checkFrozen();
 		// set datum for start/end
 		int year = datum.getYear();
 		int day = datum.getDayOfMonth();
@@ -120,10 +131,12 @@ public class Meeting implements Serializable, Cloneable {
 	}
 
 	public void setStart(Date beginn) {
+		checkFrozen();
 		this.start = beginn;
 	}
 
 	public void setStartTime(LocalTime beginn) {
+		checkFrozen();
 		Calendar newTime = Calendar.getInstance();
 		newTime.setTime(this.start);
 		newTime.set(Calendar.HOUR_OF_DAY, beginn.getHour());
@@ -138,16 +151,23 @@ public class Meeting implements Serializable, Cloneable {
 	}
 
 	public LocalTime getStartTime() {
-		if (start == null)
+		if (start == null) {
+			if (frozen) {
+				// shared instances are never changed, not even here
+				return LocalTime.now();
+			}
 			start = new Date();
+		}
 		return LocalDateTime.ofInstant(start.toInstant(), ZoneId.systemDefault()).toLocalTime();
 	}
 
 	public void setEnd(Date ende) {
+		checkFrozen();
 		this.end = ende;
 	}
 
 	public void setEndTime(LocalTime ende) {
+		checkFrozen();
 		Calendar newTime = Calendar.getInstance();
 		newTime.setTime(this.end);
 		newTime.set(Calendar.HOUR_OF_DAY, ende.getHour());
@@ -162,12 +182,18 @@ public class Meeting implements Serializable, Cloneable {
 	}
 
 	public LocalTime getEndTime() {
-		if (end == null)
+		if (end == null) {
+			if (frozen) {
+				// shared instances are never changed, not even here
+				return LocalTime.now();
+			}
 			end = new Date();
+		}
 		return LocalDateTime.ofInstant(end.toInstant(), ZoneId.systemDefault()).toLocalTime();
 	}
 
 	public void setResource(String resource) {
+		checkFrozen();
 		this.resource = resource;
 	}
 
@@ -180,10 +206,12 @@ public class Meeting implements Serializable, Cloneable {
 	}
 
 	public void setRoom(String room) {
+		checkFrozen();
 		this.room = room;
 	}
 
 	public void setUrl(String url) {
+		checkFrozen();
 		this.url = url;
 	}
 
@@ -192,6 +220,7 @@ public class Meeting implements Serializable, Cloneable {
 	}
 
 	public void setPassword(String password) {
+		checkFrozen();
 		this.password = password;
 	}
 
@@ -199,15 +228,30 @@ public class Meeting implements Serializable, Cloneable {
 		return password;
 	}
 
+	/**
+	 * @return the number of updates of this meeting, checked on every save
+	 */
+	public int getVersion() {
+		return version;
+	}
+
+	/* set by MeetingService after a save, ORMLite sets the field directly */
+	void setVersion(int version) {
+		checkFrozen();
+		this.version = version;
+	}
+
 	public boolean isNotified() {
 		return notified;
 	}
 
 	public void setNotified(boolean notified) {
+		checkFrozen();
 		this.notified = notified;
 	}
 
 	public void setParticipants(List<Participant> participant) {
+		checkFrozen();
 		this.participant = participant;
 	}
 
@@ -216,6 +260,7 @@ public class Meeting implements Serializable, Cloneable {
 	}
 
 	public void addOneParticipant(Participant aParticipant) {
+		checkFrozen();
 		if (aParticipant == null) {
 			Logger logger = Logger.getGlobal();
 			logger.severe("Meeting.addOneParticipant aParticipant is null");
@@ -225,6 +270,7 @@ public class Meeting implements Serializable, Cloneable {
 	}
 
 	public void removeOneParticipant(Participant aParticipant) {
+		checkFrozen();
 		participant.remove(aParticipant);
 	}
 
@@ -233,10 +279,12 @@ public class Meeting implements Serializable, Cloneable {
 	}
 
 	public void setOrganizer(Participant organisator) {
+		checkFrozen();
 		this.organizer = organisator;
 	}
 
 	public void setOrganizerById(String orgId) {
+		checkFrozen();
 		organizer = ParticipantService.getInstance().getByUid(orgId);
 		if (organizer == null)
 			return;
@@ -271,10 +319,35 @@ public class Meeting implements Serializable, Cloneable {
 		return hash;
 	}
 
+	/**
+	 * Makes this instance and its participant list read-only. Changing
+	 * a frozen meeting throws an IllegalStateException; {@link #clone()}
+	 * returns a changeable copy.
+	 */
+	public void freeze() {
+		if (!frozen) {
+			// an array of the exact size, as thousands of frozen meetings are cached
+			participant = participant.isEmpty() ? Collections.<Participant>emptyList()
+					: Collections.unmodifiableList(Arrays.asList(participant.toArray(new Participant[participant.size()])));
+			frozen = true;
+		}
+	}
+
+	public boolean isFrozen() {
+		return frozen;
+	}
+
+	private void checkFrozen() {
+		if (frozen) {
+			throw new IllegalStateException("Meeting " + id + " is shared and cannot be changed, use a clone");
+		}
+	}
+
 	@Override
 	public Meeting clone() throws CloneNotSupportedException {
 		Meeting c = (Meeting) super.clone();
 		c.participant = new ArrayList<Participant>(c.participant);
+		c.frozen = false;
 		return c;
 	}
 
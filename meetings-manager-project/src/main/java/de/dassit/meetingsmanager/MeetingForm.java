@@ -15,23 +15,30 @@
  */
 package de.dassit.meetingsmanager;
 
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 import java.util.logging.Logger;
 import java.util.logging.Level;
 
+import com.vaadin.flow.component.HasValue;
 import com.vaadin.flow.component.button.Button;
 import com.vaadin.flow.component.button.ButtonVariant;
 import com.vaadin.flow.component.combobox.ComboBox;
 import com.vaadin.flow.component.datepicker.DatePicker;
 import com.vaadin.flow.component.formlayout.FormLayout;
+import com.vaadin.flow.component.html.Anchor;
 import com.vaadin.flow.component.html.Label;
 import com.vaadin.flow.component.listbox.ListBox;
+import com.vaadin.flow.component.notification.Notification;
 import com.vaadin.flow.component.orderedlayout.HorizontalLayout;
 import com.vaadin.flow.component.orderedlayout.VerticalLayout;
 import com.vaadin.flow.component.textfield.TextField;
 import com.vaadin.flow.component.timepicker.TimePicker;
 import com.vaadin.flow.data.binder.Binder;
+import com.vaadin.flow.server.StreamResource;
 
 /**
  * This form allows creating and editing meetings.
@@ -54,6 +61,7 @@ public class MeetingForm extends FormLayout {
 	private Button participantRemoveButton = new Button("Teilnehmer entfernen");
 	private Button save = new Button("Speichern");
 	private Button delete = new Button("Löschen");
+	private Anchor download = new Anchor();
 
 	private AddParticipantDialog addParticipantDialog;
 
@@ -79,7 +87,9 @@ public class MeetingForm extends FormLayout {
 
 		participantList.setHeight("10em");
 
-		HorizontalLayout buttons = new HorizontalLayout(save, delete);
+		download.setText("Kalendereintrag (.ics)");
+		download.getElement().setAttribute("download", true);
+		HorizontalLayout buttons = new HorizontalLayout(save, delete, download);
 
 		participantList.setWidth("32em");
 		participantList.addValueChangeListener(e -> {
@@ -117,6 +127,13 @@ public class MeetingForm extends FormLayout {
 		binder.forField(end).bind(meeting -> meeting.getEndTime(), (meeting, value) -> meeting.setEndTime(value));
 		binder.forField(organizer).bind(meeting -> meeting.getOrganizerId(),
 				(meeting, value) -> meeting.setOrganizerById(value));
+		// after the binder has updated the meeting
+		addConflictCheck(datum);
+		addConflictCheck(start);
+		addConflictCheck(end);
+		addConflictCheck(roomsMenu);
+		addConflictCheck(resourceMenu);
+		addConflictCheck(organizer);
 		addParticipantDialog.setHeight("32em");
 		addParticipantDialog.setWidth("60em");
 
@@ -129,12 +146,34 @@ public class MeetingForm extends FormLayout {
 		addParticipantDialog.setMeeting(m);
 
 		binder.setBean(m);
+		updateDownload(m);
 
 		if (m != null) {
 			name.focus();
 		}
 	}
 
+	/**
+	 * Offers the saved state of the meeting as iCalendar file.
+	 */
+	private void updateDownload(Meeting m) {
+		if (m == null || m.getId() == null) {
+			download.removeHref();
+			download.setVisible(false);
+			return;
+		}
+		final Integer id = m.getId();
+		StreamResource resource = new StreamResource("Konferenz.ics", (stream, session) -> {
+			Meeting saved = meetingService.getById(id);
+			if (saved != null) {
+				IcsCache.getInstance().write(stream, null, Collections.singletonList(saved));
+			}
+		});
+		resource.setContentType("text/calendar; charset=utf-8");
+		download.setHref(resource);
+		download.setVisible(true);
+	}
+
 	public ParticipantView getParticipantView() {
 		return participantView;
 	}
@@ -205,10 +244,18 @@ public class MeetingForm extends FormLayout {
 
 	private void save() {
 		Meeting t = binder.getBean();
-		meetingService.save(t);
-		meetingView.updateList();
-		participantView.updateList();
-		calendarView.update();
+		try {
+			meetingService.save(t);
+		} catch (OptimisticLockException e) {
+			showConflict();
+			return;
+		} catch (BookingConflictException e) {
+			Notification n = new Notification(
+					"Nicht gespeichert, bereits gebucht: " + describeBookings(e.getConflicts()), 5000);
+			n.open();
+			return;
+		}
+		// the views are updated by the MeetingChangeEvent
 
 		setMeeting(null);
 		clearFields();
@@ -216,14 +263,87 @@ public class MeetingForm extends FormLayout {
 
 	private void delete() {
 		Meeting t = binder.getBean();
-		meetingService.delete(t);
-		meetingView.updateList();
-		participantView.updateList();
-		calendarView.update();
+		try {
+			meetingService.delete(t);
+		} catch (OptimisticLockException e) {
+			showConflict();
+			return;
+		}
 
 		setMeeting(null);
 	}
 
+	private void addConflictCheck(HasValue<?, ?> field) {
+		field.addValueChangeListener(e -> {
+			if (e.isFromClient()) {
+				warnConflicts();
+			}
+		});
+	}
+
+	/**
+	 * Warns if the room or resource is already booked at the chosen time,
+	 * or if the organizer or a participant has another meeting then.
+	 */
+	private void warnConflicts() {
+		if (currentMeeting == null) {
+			return;
+		}
+		StringBuilder message = new StringBuilder();
+		List<Meeting> conflicts = meetingService.findConflicts(currentMeeting);
+		if (!conflicts.isEmpty()) {
+			message.append("Achtung, bereits gebucht: ").append(describeBookings(conflicts));
+		}
+		List<Meeting> busy = meetingService.findParticipantConflicts(currentMeeting);
+		if (!busy.isEmpty()) {
+			if (message.length() > 0) {
+				message.append(". ");
+			}
+			message.append("Teilnehmer haben bereits Termine: ").append(describeBookings(busy));
+		}
+		if (message.length() > 0) {
+			Notification n = new Notification(message.toString(), 4000);
+			n.open();
+		}
+	}
+
+	private static String describeBookings(List<Meeting> meetings) {
+		// the zone of the date and time fields, see Meeting.getStartTime()
+		ZoneId zone = ZoneId.systemDefault();
+		DateTimeFormatter format = DateTimeFormatter.ofPattern("dd.MM. HH:mm");
+		DateTimeFormatter timeFormat = DateTimeFormatter.ofPattern("HH:mm");
+		StringBuilder sb = new StringBuilder();
+		for (Meeting m : meetings) {
+			if (sb.length() > 0) {
+				sb.append(", ");
+			}
+			sb.append(m.getName()).append(" (");
+			if (m.getRoom() != null) {
+				sb.append(m.getRoom()).append(' ');
+			}
+			if (m.getResource() != null) {
+				sb.append(m.getResource()).append(' ');
+			}
+			sb.append(format.format(m.getStart().toInstant().atZone(zone)));
+			sb.append('-').append(timeFormat.format(m.getEnd().toInstant().atZone(zone))).append(')');
+		}
+		return sb.toString();
+	}
+
+	/**
+	 * Tells the user that someone else has changed the meeting in the meantime.
+	 * The form keeps the user's input; the lists show the current state.
+	 */
+	private void showConflict() {
+		Notification n = new Notification(
+				"Der Termin wurde inzwischen von jemand anderem geändert oder gelöscht. "
+						+ "Bitte den Termin neu öffnen und die Änderungen wiederholen.",
+				5000);
+		n.open();
+		meetingView.updateList();
+		calendarView.update();
+	}
+
 	public void focus() {
 		name.focus();
 	}
@@ -231,6 +351,7 @@ public class MeetingForm extends FormLayout {
 	public void addOneParticipant(Participant t) {
 		currentMeeting.addOneParticipant(t);
 		makeParticipantList();
+		warnConflicts();
 	}
 
 	public void removeParticipantByName(String s) {
@@ -250,7 +371,12 @@ public class MeetingForm extends FormLayout {
 			ArrayList<Participant> newList = new ArrayList<Participant>(currentMeeting.getParticipants());
 			newList.remove(found);
 			if (found.isExternal()) {
-				participantService.delete(found);
+				try {
+					participantService.delete(found);
+				} catch (OptimisticLockException e) {
+					// changed by someone else, then it is kept
+					Logger.getGlobal().log(Level.WARNING, e.getMessage());
+				}
 			}
 			currentMeeting.setParticipants(newList);
 		}
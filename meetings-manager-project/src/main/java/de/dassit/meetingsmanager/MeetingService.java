@@ -16,18 +16,37 @@
 package de.dassit.meetingsmanager;
 
 import java.sql.SQLException;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalTime;
+import java.time.ZoneId;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.Comparator;
+import java.util.Date;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
 import com.j256.ormlite.dao.Dao;
 import com.j256.ormlite.dao.DaoManager;
+import com.j256.ormlite.field.SqlType;
+import com.j256.ormlite.misc.TransactionManager;
+import com.j256.ormlite.stmt.DeleteBuilder;
+import com.j256.ormlite.stmt.QueryBuilder;
+import com.j256.ormlite.stmt.SelectArg;
+import com.j256.ormlite.stmt.Where;
 import com.j256.ormlite.support.ConnectionSource;
-import com.j256.ormlite.table.TableUtils;
+import com.vaadin.flow.data.provider.QuerySortOrder;
+import com.vaadin.flow.data.provider.SortDirection;
 
 /**
  * This class provides a service to handle persistence of meeting objects.
@@ -39,24 +58,53 @@ public class MeetingService {
 	private static final Logger LOGGER = Logger.getLogger(MeetingService.class.getName());
 	private static final int PASSWORD_LENGTH = 8;
 
-	private HashMap<Integer, Meeting> meetings = new HashMap<>();
+	/* the business hours on weekdays, also shown by the CalendarView */
+	public static final LocalTime BUSINESS_START = LocalTime.of(8, 0);
+	public static final LocalTime BUSINESS_END = LocalTime.of(17, 0);
+	public static final ZoneId ZONE = ZoneId.of("Europe/Berlin");
+
+	/* rooms and resources are cached as small ints, see StringDictionary */
+	private static final StringDictionary ROOMS = new StringDictionary(Configuration.getInstance().getRooms());
+	private static final StringDictionary RESOURCES = new StringDictionary(
+			Configuration.getInstance().getResources());
+
+	/* SQLite allows at most 999 parameters per statement */
+	private static final int IN_BATCH_SIZE = 500;
+	/* SQL expressions for the sort properties of findPage() */
+	private static final Map<String, String> SORT_COLUMNS = new HashMap<String, String>();
+	static {
+		SORT_COLUMNS.put("name", "name");
+		SORT_COLUMNS.put("start", "start");
+		SORT_COLUMNS.put("room", "room");
+		SORT_COLUMNS.put("resource", "resource");
+		SORT_COLUMNS.put("organizer", "(SELECT uid FROM participant WHERE participant.id = meetings.organizer_id)");
+	}
+
+	/* the cached meetings, replaced as a whole on every change */
+	private volatile Snapshot snapshot = new Snapshot(-1, 0);
+	private ChangeTracker<Meeting> tracker;
+	/* serialize writes to the same meeting, see save() and delete() */
+	private final StripedLocks locks = new StripedLocks(64);
 
 	private Dao<Meeting, Integer> dao;
 	private Dao<MeetingParticipant, Integer> participantListDao;
 	private Dao<Participant, Integer> participantDao;
+	private Dao<NotificationJob, Integer> outboxDao;
+	private Dao<MailDelivery, Integer> deliveryDao;
 
 	private MeetingService() {
 		try {
 			ConnectionSource connectionSource = DbConnection.getConnectionSource();
 
-			dao = DaoManager.createDao(connectionSource, Meeting.class);
-			TableUtils.createTableIfNotExists(connectionSource, Meeting.class);
+			SchemaMigrations.migrate(connectionSource);
 
+			dao = DaoManager.createDao(connectionSource, Meeting.class);
 			participantListDao = DaoManager.createDao(connectionSource, MeetingParticipant.class);
-			TableUtils.createTableIfNotExists(connectionSource, MeetingParticipant.class);
-
 			participantDao = DaoManager.createDao(connectionSource, Participant.class);
-			TableUtils.createTableIfNotExists(connectionSource, Participant.class);
+			outboxDao = DaoManager.createDao(connectionSource, NotificationJob.class);
+			deliveryDao = DaoManager.createDao(connectionSource, MailDelivery.class);
+
+			tracker = new ChangeTracker<Meeting>(dao, "meetings");
 		} catch (SQLException e) {
 			LOGGER.log(Level.SEVERE, e.getMessage(), e);
 			dao = null;
@@ -66,7 +114,7 @@ public class MeetingService {
 	/**
 	 * @return a reference to a facade for Meeting objects.
 	 */
-	public static MeetingService getInstance() {
+	public static synchronized MeetingService getInstance() {
 		if (instance == null) {
 			instance = new MeetingService();
 		}
@@ -76,58 +124,301 @@ public class MeetingService {
 	/**
 	 * @return all available Meeting objects.
 	 */
-	public synchronized List<Meeting> findAll() {
+	public List<Meeting> findAll() {
 		return findAll(null);
 	}
 
-	public void loadFromDb() {
+	/**
+	 * Reloads all meetings with their organizers and participants.
+	 * The whole graph is built from three queries (participants, meetings
+	 * and the meeting_participant join table), and every meeting refers
+	 * to the Participant instances cached by {@link ParticipantService}.
+	 */
+	public synchronized void loadFromDb() {
 		List<Meeting> result = null;
+		List<MeetingParticipant> links = null;
+		// also brings the participant cache up to date
+		int participantGeneration = ParticipantService.getInstance().getGeneration();
 
 		try {
+			tracker.reset();
 			result = dao.queryForAll();
+			links = participantListDao.queryForAll();
 		} catch (SQLException e) {
 			LOGGER.log(Level.SEVERE, e.getMessage(), e);
 			return;
 		}
 
-		meetings = new HashMap<Integer, Meeting>();
-
+		HashMap<Integer, Meeting> newMeetings = new HashMap<Integer, Meeting>(result.size() * 2);
 		for (Meeting m : result) {
+			newMeetings.put(m.getId(), m);
+		}
+		attachParticipants(newMeetings, links);
+
+		Snapshot next = new Snapshot(participantGeneration, snapshot.version + 1);
+		next.putAll(newMeetings.values());
+		snapshot = next;
+		EventBus.getInstance().publish(new MeetingChangeEvent(ChangeEvent.Type.RELOADED, null));
+	}
+
+	/**
+	 * @return the current snapshot, after loading the cache, checking for
+	 *         external changes or relinking to changed participants if that
+	 *         is due. Only then the caller has to wait for the lock.
+	 */
+	private Snapshot current() {
+		if (tracker.isCheckDue()
+				|| snapshot.participantGeneration != ParticipantService.getInstance().getGeneration()) {
+			syncWithDb();
+		}
+		return snapshot;
+	}
+
+	/**
+	 * Brings the cache up to date. The first call loads all meetings,
+	 * later calls only read the rows changed outside of the application
+	 * since the last check (see {@link ChangeTracker}). Changes made through
+	 * this service are applied to the cache directly by {@link #save(Meeting)}
+	 * and {@link #delete(Meeting)}.
+	 */
+	private synchronized void syncWithDb() {
+		if (!tracker.isLoaded()) {
+			loadFromDb();
+			return;
+		}
+
+		int participantGeneration = ParticipantService.getInstance().getGeneration();
+		Snapshot next = null;
+		List<MeetingChangeEvent> events = new ArrayList<MeetingChangeEvent>();
+		if (tracker.isCheckDue()) {
 			try {
-				ParticipantService.getInstance().refresh(m.getOrganizer());
-				loadParticipantList(m);
+				List<Meeting> changed = tracker.queryChanges();
+				if (!changed.isEmpty()) {
+					loadParticipantLists(changed);
+					next = new Snapshot(snapshot);
+					for (Meeting m : changed) {
+						ChangeEvent.Type type = next.meetings.containsKey(m.getId()) ? ChangeEvent.Type.UPDATED
+								: ChangeEvent.Type.CREATED;
+						next.put(m);
+						events.add(new MeetingChangeEvent(type, next.meetings.get(m.getId())));
+					}
+				}
+				if (!tracker.matches((next != null ? next : snapshot).meetings.keys())) {
+					// rows have been deleted outside of the application
+					loadFromDb();
+					return;
+				}
 			} catch (SQLException e) {
 				LOGGER.log(Level.SEVERE, e.getMessage(), e);
 			}
-			meetings.put(m.getId(), m);
+		}
+
+		if (snapshot.participantGeneration != participantGeneration) {
+			if (next == null) {
+				next = new Snapshot(snapshot);
+			}
+			// replace the meetings that refer to changed or deleted participants
+			Set<Integer> changedParticipants = ParticipantService.getInstance()
+					.changedSince(snapshot.participantGeneration);
+			List<Meeting> candidates = changedParticipants == null ? new ArrayList<Meeting>(next.meetings.values())
+					: next.meetingsOf(changedParticipants);
+			for (Meeting m : candidates) {
+				if (!isLinked(m)) {
+					Meeting c = copy(m);
+					linkParticipants(c);
+					next.put(c);
+				}
+			}
+			next.participantGeneration = participantGeneration;
+		}
+
+		if (next != null) {
+			snapshot = next;
+		}
+		boolean inserted = false;
+		for (MeetingChangeEvent event : events) {
+			inserted |= event.getType() == ChangeEvent.Type.CREATED;
+			EventBus.getInstance().publish(event);
+		}
+		if (inserted) {
+			// rows inserted by other programs have no job in the outbox
+			NotificationDispatcher.getInstance().meetingsInserted();
 		}
 	}
 
-	private void loadParticipantList(Meeting m) throws SQLException {
-		List<MeetingParticipant> result;
-		List<Participant> participantList = new ArrayList<Participant>();
+	/**
+	 * @return true if both meetings book the same room or resource at an
+	 *         overlapping time, checked like {@link Snapshot#conflicts(Meeting)}
+	 */
+	private static boolean bookSameSlot(Meeting a, Meeting b) {
+		if (a.getStart() == null || a.getEnd() == null || b.getStart() == null || b.getEnd() == null) {
+			return false;
+		}
+		if (!a.getStart().before(b.getEnd()) || !b.getStart().before(a.getEnd())) {
+			return false;
+		}
+		// names, as a room of this batch may not be in the dictionary yet
+		return (a.getRoom() != null && a.getRoom().equals(b.getRoom()))
+				|| (a.getResource() != null && a.getResource().equals(b.getResource()));
+	}
 
-		result = participantListDao.queryForEq("meeting_id", m.getId());
+	private static Meeting copy(Meeting m) {
+		try {
+			return m.clone();
+		} catch (CloneNotSupportedException ex) {
+			throw new RuntimeException(ex);
+		}
+	}
 
-		for (MeetingParticipant mt : result) {
-			dao.refresh(mt.getMeeting());
-			participantDao.refresh(mt.getParticipant());
+	/**
+	 * Loads the participant lists of the given meetings, using one
+	 * query for every {@value #IN_BATCH_SIZE} meetings.
+	 */
+	private void loadParticipantLists(Collection<Meeting> list) throws SQLException {
+		HashMap<Integer, Meeting> byId = new HashMap<Integer, Meeting>(list.size() * 2);
+		for (Meeting m : list) {
+			byId.put(m.getId(), m);
+		}
+
+		List<Integer> ids = new ArrayList<Integer>(byId.keySet());
+		List<MeetingParticipant> links = new ArrayList<MeetingParticipant>();
+		for (int i = 0; i < ids.size(); i += IN_BATCH_SIZE) {
+			List<Integer> batch = ids.subList(i, Math.min(i + IN_BATCH_SIZE, ids.size()));
+			links.addAll(participantListDao.queryBuilder().where().in("meeting_id", batch).query());
+		}
+		attachParticipants(byId, links);
+	}
+
+	/**
+	 * Resolves the organizer and the join table rows of the given
+	 * meetings to the cached Participant instances, with one lookup
+	 * for all of them (see {@link ParticipantService#resolveAll(Collection)}).
+	 */
+	private void attachParticipants(Map<Integer, Meeting> byId, List<MeetingParticipant> links) {
+		Set<Integer> ids = new HashSet<Integer>();
+		for (Meeting m : byId.values()) {
+			if (m.getOrganizer() != null) {
+				ids.add(m.getOrganizer().getId());
+			}
+		}
+		for (MeetingParticipant mt : links) {
+			if (mt.getParticipant() != null) {
+				ids.add(mt.getParticipant().getId());
+			}
+		}
+		Map<Integer, Participant> participants = ParticipantService.getInstance().resolveAll(ids);
+
+		for (Meeting m : byId.values()) {
+			Participant organizer = m.getOrganizer();
+			if (organizer != null && participants.containsKey(organizer.getId())) {
+				m.setOrganizer(participants.get(organizer.getId()));
+			}
+			m.setParticipants(new ArrayList<Participant>());
+		}
+
+		for (MeetingParticipant mt : links) {
+			Meeting m = mt.getMeeting() == null ? null : byId.get(mt.getMeeting().getId());
+			Participant p = mt.getParticipant() == null ? null : participants.get(mt.getParticipant().getId());
+			if (m != null && p != null) {
+				m.addOneParticipant(p);
+			}
+		}
+	}
 
-			participantList.add(mt.getParticipant());
+	/**
+	 * Replaces the organizer and participants of a meeting with the
+	 * instances currently cached by {@link ParticipantService}.
+	 * Participants that do not exist anymore are removed.
+	 */
+	private void linkParticipants(Meeting m) {
+		ParticipantService participantService = ParticipantService.getInstance();
+		List<Participant> list = new ArrayList<Participant>(m.getParticipants().size());
+
+		for (Participant p : m.getParticipants()) {
+			Participant cached = participantService.getById(p.getId());
+			if (cached != null) {
+				list.add(cached);
+			}
 		}
+		m.setOrganizer(resolve(m.getOrganizer()));
+		m.setParticipants(list);
+	}
 
-		m.setParticipants(participantList);
+	private Participant resolve(Participant p) {
+		if (p == null) {
+			return null;
+		}
+		Participant cached = ParticipantService.getInstance().getById(p.getId());
+		return cached != null ? cached : p;
 	}
 
-	private void saveParticipantList(Meeting m) throws SQLException {
-		deleteParticipantList(m);
+	/**
+	 * @return true if the organizer and participants of a meeting are
+	 *         the instances currently cached by {@link ParticipantService}
+	 */
+	private boolean isLinked(Meeting m) {
+		ParticipantService participantService = ParticipantService.getInstance();
+
+		if (m.getOrganizer() != null && resolve(m.getOrganizer()) != m.getOrganizer()) {
+			return false;
+		}
+		for (Participant p : m.getParticipants()) {
+			if (participantService.getById(p.getId()) != p) {
+				return false;
+			}
+		}
+		return true;
+	}
 
+	/**
+	 * Writes the participant list of a meeting. Only the rows that differ
+	 * from the stored list are inserted or deleted, in a single transaction.
+	 */
+	private void saveParticipantList(final Meeting m) throws SQLException {
+		Set<Integer> wanted = new LinkedHashSet<Integer>();
+		Map<Integer, Participant> participants = new HashMap<Integer, Participant>();
 		for (Participant t : m.getParticipants()) {
-			MeetingParticipant mt = new MeetingParticipant();
-			mt.setMeeting(m);
-			mt.setParticipant(t);
-			participantListDao.createIfNotExists(mt);
+			if (t.getId() != null) {
+				wanted.add(t.getId());
+				participants.put(t.getId(), t);
+			}
+		}
+
+		Set<Integer> stored = new HashSet<Integer>();
+		final List<MeetingParticipant> removed = new ArrayList<MeetingParticipant>();
+		for (MeetingParticipant mt : participantListDao.queryForEq("meeting_id", m.getId())) {
+			Integer participantId = mt.getParticipant() == null ? null : mt.getParticipant().getId();
+			// also drops duplicate rows
+			if (!wanted.contains(participantId) || !stored.add(participantId)) {
+				removed.add(mt);
+			}
+		}
+
+		final List<MeetingParticipant> added = new ArrayList<MeetingParticipant>();
+		for (Integer participantId : wanted) {
+			if (!stored.contains(participantId)) {
+				MeetingParticipant mt = new MeetingParticipant();
+				mt.setMeeting(m);
+				mt.setParticipant(participants.get(participantId));
+				added.add(mt);
+			}
+		}
+
+		if (removed.isEmpty() && added.isEmpty()) {
+			return;
 		}
+		TransactionManager.callInTransaction(participantListDao.getConnectionSource(), new Callable<Void>() {
+			@Override
+			public Void call() throws Exception {
+				if (!removed.isEmpty()) {
+					participantListDao.delete(removed);
+				}
+				if (!added.isEmpty()) {
+					participantListDao.create(added);
+				}
+				return null;
+			}
+		});
 	}
 
 	private void deleteParticipantList(Meeting m) throws SQLException {
@@ -139,26 +430,243 @@ public class MeetingService {
 		participantListDao.delete(result);
 	}
 
+	/**
+	 * Finds the meetings overlapping the given time interval, directly
+	 * in the database. Organizers and participants are taken from the
+	 * cache of {@link ParticipantService}.
+	 *
+	 * @param from      start of the interval (inclusive)
+	 * @param to        end of the interval (exclusive)
+	 * @param rooms     only return meetings in one of these rooms,
+	 *                  null or empty for all rooms
+	 * @param resources only return meetings using one of these resources,
+	 *                  null or empty for all resources
+	 * @return the meetings sorted by start time
+	 */
+	public List<Meeting> findBetween(Instant from, Instant to, Collection<String> rooms,
+			Collection<String> resources) {
+		ParticipantService.getInstance().syncWithDb();
+		try {
+			QueryBuilder<Meeting, Integer> qb = dao.queryBuilder();
+			Where<Meeting, Integer> where = qb.where();
+			where.lt("start", Date.from(to)).and().gt("end", Date.from(from));
+			if (rooms != null && !rooms.isEmpty()) {
+				where.and().in("room", selectArgs(rooms));
+			}
+			if (resources != null && !resources.isEmpty()) {
+				where.and().in("resource", selectArgs(resources));
+			}
+			qb.orderBy("start", true);
+
+			List<Meeting> result = qb.query();
+			loadParticipantLists(result);
+			return result;
+		} catch (SQLException e) {
+			LOGGER.log(Level.SEVERE, e.getMessage(), e);
+			return new ArrayList<Meeting>();
+		}
+	}
+
+	private static Object[] selectArgs(Collection<String> values) {
+		Object[] args = new Object[values.size()];
+		int i = 0;
+		for (String value : values) {
+			args[i++] = new SelectArg(SqlType.STRING, value);
+		}
+		return args;
+	}
+
+	/**
+	 * @return the cached meeting with the given id, shared and read-only,
+	 *         or null
+	 */
+	public Meeting getById(Integer id) {
+		return id == null ? null : current().meetings.get(id);
+	}
+
+	/**
+	 * Reads a meeting with its participants from the database, bypassing
+	 * the cache, e.g. for a meeting that has been committed but not yet
+	 * published to the cache.
+	 *
+	 * @return the meeting, or null if it does not exist
+	 */
+	Meeting readFromDb(Integer id) throws SQLException {
+		Meeting m = dao.queryForId(id);
+		if (m != null) {
+			loadParticipantLists(Collections.singletonList(m));
+		}
+		return m;
+	}
+
+	/**
+	 * Finds the meetings that book the same room or resource as the given
+	 * meeting at an overlapping time, using the interval indexes of the
+	 * cache instead of looking at every meeting.
+	 *
+	 * @return the conflicting meetings sorted by start time, without the
+	 *         meeting itself
+	 */
+	public List<Meeting> findConflicts(Meeting m) {
+		return current().conflicts(m);
+	}
+
+	/**
+	 * Finds the meetings that the organizer or one of the participants of
+	 * the given meeting attends at an overlapping time, using the
+	 * per-participant interval indexes of the cache.
+	 *
+	 * @return the conflicting meetings sorted by start time, without the
+	 *         meeting itself
+	 */
+	public List<Meeting> findParticipantConflicts(Meeting m) {
+		return current().participantConflicts(m);
+	}
+
+	/**
+	 * Finds the meetings a participant organizes or attends, from the
+	 * reverse index of the cache. Takes time proportional to the number
+	 * of these meetings, not of all meetings.
+	 *
+	 * @return the meetings sorted by start time
+	 */
+	public List<Meeting> findByParticipant(Participant p) {
+		List<Meeting> result = current().meetingsOf(Collections.singletonList(p.getId()));
+		Snapshot.sortByStart(result);
+		return result;
+	}
+
+	/**
+	 * Finds the meetings in a room between from and to, from the interval
+	 * index of the cache.
+	 *
+	 * @return the meetings sorted by start time
+	 */
+	public List<Meeting> findInRoom(String room, Instant from, Instant to) {
+		Snapshot s = current();
+		List<Meeting> result = s.booked(s.byRoom, ROOMS.lookup(room), from.toEpochMilli(), to.toEpochMilli());
+		Snapshot.sortByStart(result);
+		return result;
+	}
+
+	/**
+	 * Finds the meetings using a resource between from and to, from the
+	 * interval index of the cache.
+	 *
+	 * @return the meetings sorted by start time
+	 */
+	public List<Meeting> findUsingResource(String resource, Instant from, Instant to) {
+		Snapshot s = current();
+		List<Meeting> result = s.booked(s.byResource, RESOURCES.lookup(resource), from.toEpochMilli(),
+				to.toEpochMilli());
+		Snapshot.sortByStart(result);
+		return result;
+	}
+
+	/**
+	 * @return a number that grows with every change of the cached meetings,
+	 *         e.g. to tell clients whether their copy is still current.
+	 *         Changes outside of the application are only checked every
+	 *         cacheCheckInterval, not on every call.
+	 */
+	public long getDataVersion() {
+		return current().version;
+	}
+
+	/**
+	 * @return the time of the last change of the cached meetings in
+	 *         milliseconds
+	 */
+	public long getLastModified() {
+		return current().created;
+	}
+
+	/**
+	 * Finds the times within business hours between from and to at which
+	 * all participants and one of the rooms and one of the resources are
+	 * free for at least the given duration. The busy times come from the
+	 * interval indexes of the cache and are merged with a sweep over the
+	 * sorted intervals, so no database access is needed.
+	 *
+	 * @param participants the participants that have to attend
+	 * @param rooms        the possible rooms, empty if no room is needed
+	 * @param resources    the possible resources, empty if no resource is
+	 *                     needed
+	 * @return the free windows, earliest and then longest first, once for
+	 *         every free combination of room and resource
+	 */
+	public List<FreeSlot> findFreeSlots(Collection<Participant> participants, Collection<String> rooms,
+			Collection<String> resources, Duration duration, Instant from, Instant to) {
+		Snapshot current = current();
+		long start = from.toEpochMilli();
+		long end = to.toEpochMilli();
+		long length = duration.toMillis();
+
+		List<long[]> busy = new ArrayList<long[]>();
+		for (Participant p : participants) {
+			busy.addAll(current.participantBusy(p.getId(), start, end));
+		}
+		List<long[]> free = Intervals.subtract(Intervals.businessHours(from, to, BUSINESS_START, BUSINESS_END, ZONE),
+				Intervals.merge(busy));
+
+		List<FreeSlot> result = new ArrayList<FreeSlot>();
+		for (String room : candidates(rooms)) {
+			List<long[]> roomFree = Intervals.subtract(free,
+					Intervals.merge(current.busy(current.byRoom, ROOMS.lookup(room), start, end)));
+			for (String resource : candidates(resources)) {
+				List<long[]> slots = Intervals.subtract(roomFree, Intervals
+						.merge(current.busy(current.byResource, RESOURCES.lookup(resource), start, end)));
+				for (long[] slot : slots) {
+					if (slot[1] - slot[0] >= length) {
+						result.add(new FreeSlot(Instant.ofEpochMilli(slot[0]), Instant.ofEpochMilli(slot[1]), room,
+								resource));
+					}
+				}
+			}
+		}
+
+		Collections.sort(result, new Comparator<FreeSlot>() {
+			@Override
+			public int compare(FreeSlot o1, FreeSlot o2) {
+				int c = o1.getStart().compareTo(o2.getStart());
+				if (c == 0) {
+					c = o2.getEnd().compareTo(o1.getEnd());
+				}
+				return c;
+			}
+		});
+		return result;
+	}
+
+	/**
+	 * @return the candidates, or a single null for "none needed"
+	 */
+	private static Collection<String> candidates(Collection<String> names) {
+		if (names == null || names.isEmpty()) {
+			return Collections.singletonList(null);
+		}
+		return names;
+	}
+
 	/**
 	 * Finds all Meetings that match given filter.
+	 * The meetings are shared and read-only (see {@link Meeting#freeze()}),
+	 * callers have to clone them before making changes.
 	 *
 	 * @param stringFilter filter that returned objects should match or null/empty
-	 *                     string if all objects should be returned.
+	 *                     string if all objects should be returned. Matches
+	 *                     the name, room, resource or organizer.
 	 * @return list a Meeting objects
 	 */
-	public synchronized List<Meeting> findAll(String stringFilter) {
-		if (stringFilter == null || stringFilter.equals(""))
-			loadFromDb();
-		ArrayList<Meeting> arrayList = new ArrayList<>();
-		for (Meeting contact : meetings.values()) {
-			try {
-				boolean passesFilter = (stringFilter == null || stringFilter.isEmpty())
-						|| contact.toString().toLowerCase().contains(stringFilter.toLowerCase());
-				if (passesFilter) {
-					arrayList.add(contact.clone());
-				}
-			} catch (CloneNotSupportedException ex) {
-				Logger.getLogger(MeetingService.class.getName()).log(Level.SEVERE, null, ex);
+	public List<Meeting> findAll(String stringFilter) {
+		Snapshot s = current();
+		ArrayList<Meeting> arrayList;
+		if (stringFilter == null || stringFilter.isEmpty()) {
+			arrayList = new ArrayList<>(s.meetings.values());
+		} else {
+			arrayList = new ArrayList<>();
+			for (Integer id : s.searchIndex.search(stringFilter)) {
+				arrayList.add(s.meetings.get(id));
 			}
 		}
 		Collections.sort(arrayList, new Comparator<Meeting>() {
@@ -180,93 +688,809 @@ public class MeetingService {
 	 * @param maxresults   maximum result count
 	 * @return list a Meeting objects
 	 */
-	public synchronized List<Meeting> findAll(String stringFilter, int start, int maxresults) {
-		ArrayList<Meeting> arrayList = new ArrayList<>();
-		for (Meeting contact : meetings.values()) {
-			try {
-				boolean passesFilter = (stringFilter == null || stringFilter.isEmpty())
-						|| contact.toString().toLowerCase().contains(stringFilter.toLowerCase());
-				if (passesFilter) {
-					arrayList.add(contact.clone());
+	public List<Meeting> findAll(String stringFilter, int start, int maxresults) {
+		return findPage(stringFilter, start, maxresults, null);
+	}
+
+	/**
+	 * Reads one page of the meetings matching a filter, for lazy loading
+	 * grids. Without a filter the page is read from the database, with a
+	 * filter the matches from the search index are sorted and paged in
+	 * memory, as they are cached anyway.
+	 *
+	 * @param stringFilter filter on name, room, resource or organizer,
+	 *                     null or empty for all meetings
+	 * @param start        the index of first result
+	 * @param maxresults   maximum result count
+	 * @param sortOrders   sort properties (name, start, room, resource, organizer);
+	 *                     meetings are sorted by descending id last
+	 * @return list a Meeting objects
+	 */
+	public List<Meeting> findPage(String stringFilter, int start, int maxresults, List<QuerySortOrder> sortOrders) {
+		if (stringFilter != null && !stringFilter.isEmpty()) {
+			Snapshot s = current();
+			List<Meeting> matches = new ArrayList<Meeting>();
+			for (Integer id : s.searchIndex.search(stringFilter)) {
+				matches.add(s.meetings.get(id));
+			}
+			Collections.sort(matches, sortOrder(sortOrders));
+			return page(matches, start, maxresults);
+		}
+		ParticipantService.getInstance().syncWithDb();
+		try {
+			QueryBuilder<Meeting, Integer> qb = dao.queryBuilder();
+			for (QuerySortOrder order : sortOrders == null ? Collections.<QuerySortOrder>emptyList() : sortOrders) {
+				String column = SORT_COLUMNS.get(order.getSorted());
+				if (column != null) {
+					qb.orderByRaw(column + (order.getDirection() == SortDirection.DESCENDING ? " DESC" : " ASC"));
 				}
-			} catch (CloneNotSupportedException ex) {
-				Logger.getLogger(MeetingService.class.getName()).log(Level.SEVERE, null, ex);
 			}
+			qb.orderByRaw("id DESC");
+			qb.offset((long) start).limit((long) maxresults);
+
+			List<Meeting> result = qb.query();
+			loadParticipantLists(result);
+			return result;
+		} catch (SQLException e) {
+			LOGGER.log(Level.SEVERE, e.getMessage(), e);
+			return new ArrayList<Meeting>();
 		}
-		Collections.sort(arrayList, new Comparator<Meeting>() {
+	}
 
+	/**
+	 * @return the number of meetings matching the filter, from the search index
+	 */
+	public long count(String stringFilter) {
+		if (stringFilter == null || stringFilter.isEmpty()) {
+			return count();
+		}
+		return search(stringFilter).size();
+	}
+
+	/**
+	 * @return a comparator with the same order as the ORDER BY clause of
+	 *         {@link #findPage(String, int, int, List)}
+	 */
+	private static Comparator<Meeting> sortOrder(final List<QuerySortOrder> sortOrders) {
+		return new Comparator<Meeting>() {
 			@Override
 			public int compare(Meeting o1, Meeting o2) {
-				return (int) (o2.getId() - o1.getId());
+				for (QuerySortOrder order : sortOrders == null ? Collections.<QuerySortOrder>emptyList()
+						: sortOrders) {
+					int c = compareNullsFirst(sortKey(o1, order.getSorted()), sortKey(o2, order.getSorted()));
+					if (c != 0) {
+						return order.getDirection() == SortDirection.DESCENDING ? -c : c;
+					}
+				}
+				return o2.getId().compareTo(o1.getId());
 			}
-		});
-		int end = start + maxresults;
-		if (end > arrayList.size()) {
-			end = arrayList.size();
+		};
+	}
+
+	private static Comparable<?> sortKey(Meeting m, String property) {
+		switch (property) {
+		case "name":
+			return m.getName();
+		case "start":
+			return m.getStart();
+		case "room":
+			return m.getRoom();
+		case "resource":
+			return m.getResource();
+		case "organizer":
+			return m.getOrganizer() == null ? null : m.getOrganizer().getUid();
+		default:
+			return null;
+		}
+	}
+
+	/**
+	 * Compares two sort keys of the same type like SQLite, which sorts
+	 * NULL first.
+	 */
+	@SuppressWarnings({ "unchecked", "rawtypes" })
+	static int compareNullsFirst(Comparable a, Comparable b) {
+		if (a == null || b == null) {
+			return a == b ? 0 : (a == null ? -1 : 1);
 		}
-		return arrayList.subList(start, end);
+		return a.compareTo(b);
+	}
+
+	/**
+	 * @return the part of a sorted list shown on one page
+	 */
+	static <T> List<T> page(List<T> list, int start, int maxresults) {
+		int from = Math.min(start, list.size());
+		int to = (int) Math.min((long) from + maxresults, list.size());
+		return new ArrayList<T>(list.subList(from, to));
+	}
+
+	/**
+	 * @return the ids of the meetings whose name, room, resource or
+	 *         organizer contain the given string, from the search index
+	 */
+	public List<Integer> search(String stringFilter) {
+		return current().searchIndex.search(stringFilter);
 	}
 
 	/**
 	 * @return the amount of participants
 	 */
-	public synchronized long count() {
-		return meetings.size();
+	public long count() {
+		return current().meetings.size();
 	}
 
 	/**
-	 * Deletes a meeting, updates the database
+	 * Deletes a meeting and its participant list, updates the database
 	 *
 	 * @param value the Meeting to be deleted
+	 * @throws OptimisticLockException if the meeting has been changed
+	 *                                 since it was read
 	 */
-	public synchronized void delete(Meeting value) {
+	public void delete(final Meeting value) {
+		if (value == null || value.getId() == null) {
+			return;
+		}
+		int[] stripes = locks.lock(Collections.singletonList(value.getId()));
 		try {
-			deleteParticipantList(value);
-		} catch (SQLException e1) {
-			LOGGER.log(Level.SEVERE, e1.getMessage(), e1);
+			TransactionManager.callInTransaction(dao.getConnectionSource(), new Callable<Void>() {
+				@Override
+				public Void call() throws Exception {
+					deleteParticipantList(value);
+					DeleteBuilder<NotificationJob, Integer> jobs = outboxDao.deleteBuilder();
+					jobs.where().eq("meeting_id", value.getId());
+					jobs.delete();
+					DeleteBuilder<MailDelivery, Integer> deliveries = deliveryDao.deleteBuilder();
+					deliveries.where().eq("meeting_id", value.getId());
+					deliveries.delete();
+					DeleteBuilder<Meeting, Integer> db = dao.deleteBuilder();
+					db.where().eq("id", value.getId()).and().eq("version", value.getVersion());
+					if (db.delete() == 0 && dao.idExists(value.getId())) {
+						throw conflict(value);
+					}
+					return null;
+				}
+			});
+
+			Meeting removed;
+			synchronized (this) {
+				Snapshot next = new Snapshot(snapshot);
+				removed = next.remove(value.getId());
+				snapshot = next;
+			}
+			EventBus.getInstance().publish(
+					new MeetingChangeEvent(ChangeEvent.Type.DELETED, removed != null ? removed : value));
+		} catch (SQLException e) {
+			rethrowConflict(e);
+			LOGGER.log(Level.SEVERE, e.getMessage(), e);
+		} finally {
+			locks.unlock(stripes);
+		}
+	}
+
+	/**
+	 * Removes a participant from all meetings in the database: deletes its
+	 * rows of the join table and clears it as organizer. Must be called in
+	 * the transaction that deletes the participant, see
+	 * {@link ParticipantService#delete(Participant)}.
+	 */
+	void deleteParticipations(Integer participantId) throws SQLException {
+		DeleteBuilder<MeetingParticipant, Integer> db = participantListDao.deleteBuilder();
+		db.where().eq("participant_id", participantId);
+		db.delete();
+		dao.updateRaw("UPDATE meetings SET organizer_id = NULL, version = version + 1 WHERE organizer_id = ?",
+				participantId.toString());
+	}
+
+	/**
+	 * Reads the meetings of a deleted participant again after
+	 * {@link #deleteParticipations(Integer)} has been committed and puts
+	 * them into the cache. The meetings are found with the reverse index,
+	 * all other meetings are not touched.
+	 */
+	void participantDeleted(Integer participantId) {
+		List<Integer> ids = new ArrayList<Integer>();
+		for (Meeting m : snapshot.meetingsOf(Collections.singletonList(participantId))) {
+			ids.add(m.getId());
+		}
+		if (ids.isEmpty()) {
+			return;
 		}
+		int[] stripes = locks.lock(ids);
 		try {
-			dao.delete(value);
+			reload(ids);
 		} catch (SQLException e) {
 			LOGGER.log(Level.SEVERE, e.getMessage(), e);
+		} finally {
+			locks.unlock(stripes);
+		}
+	}
+
+	/**
+	 * Marks a meeting as notified. Called by the
+	 * {@link NotificationDispatcher} when all invitations have been sent
+	 * or given up. The version is not increased, as no user has changed
+	 * the meeting; instead a save keeps the flag (see
+	 * {@link #writeMeeting(Meeting, Map)}). Both hold the lock of the
+	 * meeting.
+	 */
+	void markNotified(Integer id) {
+		int[] stripes = locks.lock(Collections.singletonList(id));
+		try {
+			dao.updateRaw("UPDATE meetings SET notified = 1 WHERE id = ? AND notified = 0",
+					id.toString());
+			reload(Collections.singletonList(id));
+		} catch (SQLException e) {
+			LOGGER.log(Level.SEVERE, e.getMessage(), e);
+		} finally {
+			locks.unlock(stripes);
+		}
+	}
+
+	/**
+	 * Reads meetings changed by this service with SQL statements again and
+	 * puts them into the cache. The caller holds the locks of the meetings.
+	 */
+	private void reload(List<Integer> ids) throws SQLException {
+		List<Meeting> changed = new ArrayList<Meeting>();
+		for (int i = 0; i < ids.size(); i += IN_BATCH_SIZE) {
+			List<Integer> batch = ids.subList(i, Math.min(i + IN_BATCH_SIZE, ids.size()));
+			changed.addAll(dao.queryBuilder().where().in("id", batch).query());
+		}
+		loadParticipantLists(changed);
+
+		List<MeetingChangeEvent> events = new ArrayList<MeetingChangeEvent>();
+		synchronized (this) {
+			Snapshot next = new Snapshot(snapshot);
+			for (Meeting m : changed) {
+				next.put(m);
+				events.add(new MeetingChangeEvent(ChangeEvent.Type.UPDATED, next.meetings.get(m.getId())));
+			}
+			snapshot = next;
+		}
+		for (MeetingChangeEvent event : events) {
+			EventBus.getInstance().publish(event);
+		}
+	}
+
+	private static OptimisticLockException conflict(Meeting m) {
+		return new OptimisticLockException("Meeting " + m.getId() + " has been changed or deleted by someone else");
+	}
+
+	/**
+	 * Transactions wrap exceptions thrown by the callable in an SQLException,
+	 * this throws a version conflict as such again.
+	 */
+	static void rethrowConflict(SQLException e) {
+		if (e.getCause() instanceof OptimisticLockException) {
+			throw (OptimisticLockException) e.getCause();
 		}
-		meetings.remove(value.getId());
 	}
 
 	/**
 	 * Persists or updates a meeting. Also assigns an identifier for
-	 * new Meeting instances.
+	 * new Meeting instances and the new version, unless the instance is
+	 * frozen.
 	 *
 	 * @param entry
+	 * @throws OptimisticLockException if the meeting has been changed
+	 *                                 since it was read
 	 */
-	public synchronized void save(Meeting entry) {
+	public void save(Meeting entry) {
 		if (entry == null) {
 			LOGGER.log(Level.SEVERE, "Meeting is null.");
 			return;
 		}
-		try {
-			entry = (Meeting) entry.clone();
-		} catch (Exception ex) {
-			throw new RuntimeException(ex);
+		saveAll(Collections.singletonList(entry));
+	}
+
+	/**
+	 * Persists or updates several meetings, e.g. for imports. Each meeting
+	 * is written together with its participant list and, if necessary,
+	 * the activation of its organizer. All statements run in a single
+	 * transaction, so either all meetings are saved or none.
+	 * Saves of different meetings run in parallel, saves of the same
+	 * meeting or of meetings in the same room or with the same resource
+	 * one after the other.
+	 * The meetings are written as copies, which are put into the cache.
+	 * After the commit the new identifier, version and notification state
+	 * are copied back onto the given instances, except onto frozen ones.
+	 *
+	 * @param entries the meetings to save
+	 * @throws OptimisticLockException  if one of the meetings or organizers
+	 *                                  has been changed since it was read
+	 * @throws BookingConflictException if one of the meetings books a room
+	 *                                  or resource that is already booked,
+	 *                                  or booked by an earlier meeting of
+	 *                                  the same call
+	 */
+	public void saveAll(Collection<Meeting> entries) {
+		final List<Meeting> originals = new ArrayList<Meeting>(entries.size());
+		final List<Meeting> copies = new ArrayList<Meeting>(entries.size());
+		List<Integer> ids = new ArrayList<Integer>(entries.size());
+		List<Object> lockKeys = new ArrayList<Object>();
+		for (Meeting entry : entries) {
+			if (entry == null) {
+				LOGGER.log(Level.SEVERE, "Meeting is null.");
+				continue;
+			}
+			originals.add(entry);
+			copies.add(copy(entry));
+			ids.add(entry.getId());
+			lockKeys.add(entry.getId());
+			// so the conflict check cannot miss a concurrent booking
+			lockKeys.add(entry.getRoom() == null ? null : "room:" + entry.getRoom());
+			lockKeys.add(entry.getResource() == null ? null : "resource:" + entry.getResource());
 		}
+
+		final Map<Integer, Participant> activated = new HashMap<Integer, Participant>();
+		int[] stripes = locks.lock(lockKeys);
 		try {
-			dao.createOrUpdate(entry);
+			Snapshot current = current();
+			List<Meeting> accepted = new ArrayList<Meeting>(copies.size());
+			for (Meeting m : copies) {
+				List<Meeting> conflicts = new ArrayList<Meeting>();
+				for (Meeting booked : current.conflicts(m)) {
+					// meetings of this batch are checked with their new times below
+					if (!ids.contains(booked.getId())) {
+						conflicts.add(booked);
+					}
+				}
+				for (Meeting other : accepted) {
+					if (bookSameSlot(m, other)) {
+						conflicts.add(other);
+					}
+				}
+				if (!conflicts.isEmpty()) {
+					throw new BookingConflictException(m, conflicts);
+				}
+				accepted.add(m);
+			}
+
+			TransactionManager.callInTransaction(dao.getConnectionSource(), new Callable<Void>() {
+				@Override
+				public Void call() throws Exception {
+					for (Meeting m : copies) {
+						boolean created = m.getId() == null;
+						writeMeeting(m, activated);
+						if (created && !m.isNotified()) {
+							// sent by the NotificationDispatcher after the commit
+							outboxDao.create(new NotificationJob(m.getId()));
+						}
+					}
+					return null;
+				}
+			});
+
+			// the transaction is committed, now the callers and the caches can be updated
+			for (int i = 0; i < copies.size(); i++) {
+				Meeting original = originals.get(i);
+				if (!original.isFrozen()) {
+					Meeting saved = copies.get(i);
+					original.setId(saved.getId());
+					original.setVersion(saved.getVersion());
+					original.setNotified(saved.isNotified());
+				}
+			}
+			ParticipantService participantService = ParticipantService.getInstance();
+			for (Participant organizer : activated.values()) {
+				participantService.updateCache(organizer);
+			}
+			synchronized (this) {
+				Snapshot next = new Snapshot(snapshot);
+				for (Meeting m : copies) {
+					linkParticipants(m);
+					next.put(m);
+				}
+				snapshot = next;
+			}
+			for (int i = 0; i < copies.size(); i++) {
+				ChangeEvent.Type type = ids.get(i) == null ? ChangeEvent.Type.CREATED : ChangeEvent.Type.UPDATED;
+				EventBus.getInstance().publish(new MeetingChangeEvent(type, copies.get(i)));
+			}
+			if (ids.contains(null)) {
+				NotificationDispatcher.getInstance().wakeUp();
+			}
 		} catch (SQLException e) {
+			rethrowConflict(e);
 			LOGGER.log(Level.SEVERE, e.getMessage(), e);
+		} finally {
+			locks.unlock(stripes);
 		}
+	}
 
-		try {
-			saveParticipantList(entry);
-		} catch (SQLException e) {
-			LOGGER.log(Level.SEVERE, e.getMessage(), e);
+	/**
+	 * Writes a meeting, its participant list and activates the organizer
+	 * if needed. Must be called inside a transaction.
+	 */
+	private void writeMeeting(Meeting entry, Map<Integer, Participant> activated) throws SQLException {
+		Participant organizer = entry.getOrganizer();
+		if (organizer != null && !organizer.isActive()) {
+			Participant active = activated.get(organizer.getId());
+			if (active == null) {
+				try {
+					active = organizer.clone();
+				} catch (CloneNotSupportedException ex) {
+					throw new RuntimeException(ex);
+				}
+				active.setActive(true);
+				active.setPassword(PasswordGenerator.password(PASSWORD_LENGTH));
+				if (participantDao.update(active) == 0) {
+					throw new OptimisticLockException(
+							"Participant " + active.getId() + " has been changed or deleted by someone else");
+				}
+				activated.put(active.getId(), active);
+			}
+			entry.setOrganizer(active);
+		}
+
+		if (entry.getId() != null && !entry.isNotified()) {
+			// the flag may have been set since the meeting was read, it
+			// does not change the version, see markNotified()
+			entry.setNotified(dao.queryRawValue("SELECT COUNT(*) FROM meetings WHERE id = ? AND notified = 1",
+					entry.getId().toString()) > 0);
+		}
+		if (entry.getId() == null) {
+			dao.create(entry);
+		} else if (dao.update(entry) == 0) {
+			// the version column did not match
+			throw conflict(entry);
+		}
+		saveParticipantList(entry);
+	}
+
+	/**
+	 * A version of the cache. Writers copy the current snapshot, change
+	 * the copy and publish it through the volatile field; a published
+	 * snapshot and its meetings are never changed, so readers need no lock.
+	 */
+	private static class Snapshot {
+		final SharedIntMap<Meeting> meetings;
+		/* name, room, resource and organizer of the cached meetings */
+		SearchIndex searchIndex;
+		/* the bookings of every room and resource, by dictionary code */
+		final IntObjectMap<IntervalIndex> byRoom;
+		final IntObjectMap<IntervalIndex> byResource;
+		/* participant id -> ids of the meetings they organize or attend */
+		AdjacencyIndex participations;
+		/* the ParticipantService generation the meetings are linked to */
+		int participantGeneration;
+		/* counts the published snapshots */
+		final long version;
+		final long created = System.currentTimeMillis();
+
+		Snapshot(int participantGeneration, long version) {
+			this.meetings = new SharedIntMap<Meeting>();
+			this.searchIndex = new SearchIndex();
+			this.byRoom = new IntObjectMap<IntervalIndex>();
+			this.byResource = new IntObjectMap<IntervalIndex>();
+			this.participations = AdjacencyIndex.EMPTY;
+			this.participantGeneration = participantGeneration;
+			this.version = version;
+		}
+
+		Snapshot(Snapshot old) {
+			// the maps and the search index share their entries with the old snapshot
+			this.meetings = old.meetings.copy();
+			this.searchIndex = old.searchIndex.copy();
+			// the interval and adjacency indexes are immutable and can be shared
+			this.byRoom = new IntObjectMap<IntervalIndex>(old.byRoom);
+			this.byResource = new IntObjectMap<IntervalIndex>(old.byResource);
+			this.participations = old.participations;
+			this.participantGeneration = old.participantGeneration;
+			this.version = old.version + 1;
+		}
+
+		void put(Meeting m) {
+			intern(m);
+			Meeting old = meetings.get(m.getId());
+			if (old != null && old.getVersion() > m.getVersion()) {
+				// read before a concurrent save was published
+				return;
+			}
+			if (old != null) {
+				removeInterval(byRoom, ROOMS.lookup(old.getRoom()), old);
+				removeInterval(byResource, RESOURCES.lookup(old.getResource()), old);
+				for (int participantId : participantIds(old)) {
+					participations = participations.without(participantId, old.getId());
+				}
+			}
+			addMeeting(m);
+			addInterval(byRoom, ROOMS.lookup(m.getRoom()), m);
+			addInterval(byResource, RESOURCES.lookup(m.getResource()), m);
+			for (int participantId : participantIds(m)) {
+				participations = participations.with(participantId, m.getId());
+			}
+		}
+
+		/**
+		 * Adds many meetings to an empty snapshot. The indexes are built
+		 * once at the end instead of being changed for every meeting.
+		 */
+		void putAll(Collection<Meeting> list) {
+			IntObjectMap<List<Meeting>> rooms = new IntObjectMap<List<Meeting>>();
+			IntObjectMap<List<Meeting>> resources = new IntObjectMap<List<Meeting>>();
+			int[] from = new int[list.size() * 4];
+			int[] to = new int[from.length];
+			int[] ids = new int[list.size()];
+			String[][] fields = new String[list.size()][];
+			int edges = 0;
+			int n = 0;
+			for (Meeting m : list) {
+				intern(m);
+				meetings.put(m.getId(), m);
+				ids[n] = m.getId();
+				fields[n++] = searchFields(m);
+				group(rooms, ROOMS.lookup(m.getRoom()), m);
+				group(resources, RESOURCES.lookup(m.getResource()), m);
+				for (int participantId : participantIds(m)) {
+					if (edges == from.length) {
+						from = Arrays.copyOf(from, edges * 2);
+						to = Arrays.copyOf(to, edges * 2);
+					}
+					from[edges] = participantId;
+					to[edges++] = m.getId();
+				}
+			}
+			for (int code : rooms.keys()) {
+				byRoom.put(code, build(rooms.get(code)));
+			}
+			for (int code : resources.keys()) {
+				byResource.put(code, build(resources.get(code)));
+			}
+			participations = AdjacencyIndex.of(from, to, edges);
+			searchIndex = SearchIndex.of(ids, fields);
+		}
+
+		Meeting remove(Integer id) {
+			searchIndex.remove(id);
+			Meeting old = meetings.remove(id);
+			if (old != null) {
+				removeInterval(byRoom, ROOMS.lookup(old.getRoom()), old);
+				removeInterval(byResource, RESOURCES.lookup(old.getResource()), old);
+				for (int participantId : participantIds(old)) {
+					participations = participations.without(participantId, old.getId());
+				}
+			}
+			return old;
+		}
+
+		/**
+		 * @return the other meetings booking the room or resource of the
+		 *         given meeting at an overlapping time, sorted by start
+		 */
+		List<Meeting> conflicts(Meeting m) {
+			List<Meeting> result = new ArrayList<Meeting>();
+			if (!hasTimes(m)) {
+				return result;
+			}
+			Set<Integer> ids = new HashSet<Integer>();
+			overlapping(byRoom, ROOMS.lookup(m.getRoom()), m, ids);
+			overlapping(byResource, RESOURCES.lookup(m.getResource()), m, ids);
+			ids.remove(m.getId());
+			for (Integer id : ids) {
+				result.add(meetings.get(id));
+			}
+			sortByStart(result);
+			return result;
+		}
+
+		/**
+		 * @return the other meetings of the organizer or of one of the
+		 *         participants of the given meeting at an overlapping time,
+		 *         sorted by start
+		 */
+		List<Meeting> participantConflicts(Meeting m) {
+			List<Meeting> result = new ArrayList<Meeting>();
+			if (!hasTimes(m)) {
+				return result;
+			}
+			Set<Integer> ids = new HashSet<Integer>();
+			for (int participantId : participantIds(m)) {
+				for (long[] interval : participantBusy(participantId, m.getStart().getTime(), m.getEnd().getTime())) {
+					ids.add((int) interval[2]);
+				}
+			}
+			ids.remove(m.getId());
+			for (Integer id : ids) {
+				result.add(meetings.get(id));
+			}
+			sortByStart(result);
+			return result;
+		}
+
+		/**
+		 * @return the meetings organized or attended by one of the given
+		 *         participants, in no particular order
+		 */
+		List<Meeting> meetingsOf(Collection<Integer> participantIds) {
+			Set<Integer> ids = new HashSet<Integer>();
+			for (Integer participantId : participantIds) {
+				if (participantId != null) {
+					for (int id : participations.get(participantId)) {
+						ids.add(id);
+					}
+				}
+			}
+			List<Meeting> result = new ArrayList<Meeting>(ids.size());
+			for (Integer id : ids) {
+				result.add(meetings.get(id));
+			}
+			return result;
+		}
+
+		/**
+		 * @return the meetings booking a room or resource between from and
+		 *         to, unsorted
+		 */
+		List<Meeting> booked(IntObjectMap<IntervalIndex> index, int code, long from, long to) {
+			List<Meeting> result = new ArrayList<Meeting>();
+			IntervalIndex intervals = code == StringDictionary.NONE ? null : index.get(code);
+			if (intervals != null) {
+				for (int id : intervals.overlapping(from, to)) {
+					result.add(meetings.get(id));
+				}
+			}
+			return result;
+		}
+
+		/**
+		 * @return the booked times of a room or resource overlapping from
+		 *         and to, unsorted and not merged
+		 */
+		List<long[]> busy(IntObjectMap<IntervalIndex> index, int code, long from, long to) {
+			List<long[]> result = new ArrayList<long[]>();
+			IntervalIndex intervals = code == StringDictionary.NONE ? null : index.get(code);
+			if (intervals != null) {
+				for (int id : intervals.overlapping(from, to)) {
+					Meeting m = meetings.get(id);
+					result.add(new long[] { m.getStart().getTime(), m.getEnd().getTime() });
+				}
+			}
+			return result;
+		}
+
+		/**
+		 * @return the times between from and to at which the participant
+		 *         has meetings, as {start, end, meeting id}, unsorted and
+		 *         not merged. Takes time proportional to the meetings of
+		 *         the participant.
+		 */
+		List<long[]> participantBusy(Integer participantId, long from, long to) {
+			List<long[]> result = new ArrayList<long[]>();
+			if (participantId == null) {
+				return result;
+			}
+			for (int id : participations.get(participantId)) {
+				Meeting m = meetings.get(id);
+				if (hasTimes(m) && m.getStart().getTime() < to && m.getEnd().getTime() > from) {
+					result.add(new long[] { m.getStart().getTime(), m.getEnd().getTime(), id });
+				}
+			}
+			return result;
+		}
+
+		/**
+		 * Sorts meetings by start time, meetings without a time last.
+		 */
+		static void sortByStart(List<Meeting> list) {
+			Collections.sort(list, new Comparator<Meeting>() {
+				@Override
+				public int compare(Meeting o1, Meeting o2) {
+					if (o1.getStart() == null || o2.getStart() == null) {
+						return o1.getStart() == null ? (o2.getStart() == null ? 0 : 1) : -1;
+					}
+					return o1.getStart().compareTo(o2.getStart());
+				}
+			});
+		}
+
+		/**
+		 * Replaces the room and resource of a meeting read from the
+		 * database with the instances of the dictionaries, so each name
+		 * is kept only once, and makes the meeting read-only.
+		 */
+		private static void intern(Meeting m) {
+			if (!m.isFrozen()) {
+				m.setRoom(ROOMS.canonical(m.getRoom()));
+				m.setResource(RESOURCES.canonical(m.getResource()));
+				m.freeze();
+			}
+		}
+
+		private void addMeeting(Meeting m) {
+			meetings.put(m.getId(), m);
+			searchIndex.put(m.getId(), searchFields(m));
+		}
+
+		private static String[] searchFields(Meeting m) {
+			Participant organizer = m.getOrganizer();
+			return new String[] { m.getName(), m.getRoom(), m.getResource(),
+					organizer == null ? null : organizer.getUid(),
+					organizer == null ? null : organizer.getDisplayName() };
+		}
+
+		/**
+		 * @return the ids of the organizer and the participants
+		 */
+		private static int[] participantIds(Meeting m) {
+			Set<Integer> result = new HashSet<Integer>();
+			if (m.getOrganizer() != null && m.getOrganizer().getId() != null) {
+				result.add(m.getOrganizer().getId());
+			}
+			for (Participant p : m.getParticipants()) {
+				if (p.getId() != null) {
+					result.add(p.getId());
+				}
+			}
+			int[] ids = new int[result.size()];
+			int i = 0;
+			for (Integer id : result) {
+				ids[i++] = id;
+			}
+			return ids;
+		}
+
+		private static boolean hasTimes(Meeting m) {
+			return m.getStart() != null && m.getEnd() != null;
+		}
+
+		private static void addInterval(IntObjectMap<IntervalIndex> index, int code, Meeting m) {
+			if (code == StringDictionary.NONE || !hasTimes(m)) {
+				return;
+			}
+			IntervalIndex intervals = index.get(code);
+			if (intervals == null) {
+				intervals = IntervalIndex.EMPTY;
+			}
+			index.put(code, intervals.with(m.getId(), m.getStart().getTime(), m.getEnd().getTime()));
+		}
+
+		private static void removeInterval(IntObjectMap<IntervalIndex> index, int code, Meeting m) {
+			IntervalIndex intervals = code == StringDictionary.NONE ? null : index.get(code);
+			if (intervals == null) {
+				return;
+			}
+			intervals = intervals.without(m.getId());
+			if (intervals.size() == 0) {
+				index.remove(code);
+			} else {
+				index.put(code, intervals);
+			}
+		}
+
+		private static void overlapping(IntObjectMap<IntervalIndex> index, int code, Meeting m, Set<Integer> result) {
+			IntervalIndex intervals = code == StringDictionary.NONE ? null : index.get(code);
+			if (intervals != null) {
+				for (int id : intervals.overlapping(m.getStart().getTime(), m.getEnd().getTime())) {
+					result.add(id);
+				}
+			}
+		}
+
+		private static void group(IntObjectMap<List<Meeting>> groups, int code, Meeting m) {
+			if (code == StringDictionary.NONE || !hasTimes(m)) {
+				return;
+			}
+			List<Meeting> list = groups.get(code);
+			if (list == null) {
+				list = new ArrayList<Meeting>();
+				groups.put(code, list);
+			}
+			list.add(m);
 		}
 
-		Participant organisator = entry.getOrganizer();
-		if(organisator != null && !organisator.isActive()) {
-			organisator.setActive(true);
-			organisator.setPassword(PasswordGenerator.password(PASSWORD_LENGTH));
-			ParticipantService.getInstance().save(organisator);
+		private static IntervalIndex build(List<Meeting> list) {
+			int[] ids = new int[list.size()];
+			long[] starts = new long[list.size()];
+			long[] ends = new long[list.size()];
+			for (int i = 0; i < ids.length; i++) {
+				Meeting m = list.get(i);
+				ids[i] = m.getId();
+				starts[i] = m.getStart().getTime();
+				ends[i] = m.getEnd().getTime();
+			}
+			return IntervalIndex.of(ids, starts, ends);
 		}
-		meetings.put(entry.getId(), entry);
 	}
 }
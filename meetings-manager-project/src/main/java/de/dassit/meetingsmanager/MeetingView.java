@@ -20,6 +20,7 @@ import com.vaadin.flow.component.grid.Grid;
 import com.vaadin.flow.component.orderedlayout.HorizontalLayout;
 import com.vaadin.flow.component.orderedlayout.VerticalLayout;
 import com.vaadin.flow.component.textfield.TextField;
+import com.vaadin.flow.data.provider.DataProvider;
 import com.vaadin.flow.data.value.ValueChangeMode;
 
 /**
@@ -34,6 +35,11 @@ public class MeetingView extends VerticalLayout {
     private Grid<Meeting> grid = new Grid<>(Meeting.class);
     private TextField filterText = new TextField();
     private MeetingForm meetingForm = new MeetingForm(this);
+    // pages are fetched from the database while scrolling
+    private DataProvider<Meeting, Void> dataProvider = DataProvider.fromCallbacks(
+            query -> service.findPage(filterText.getValue(), query.getOffset(), query.getLimit(),
+                    query.getSortOrders()).stream(),
+            query -> (int) service.count(filterText.getValue()));
 
     public MeetingView() {
     	super();
@@ -59,6 +65,9 @@ public class MeetingView extends VerticalLayout {
         grid.getColumnByKey("name").setResizable(true);
         grid.getColumnByKey("organizerId").setResizable(true);
         grid.getColumnByKey("room").setHeader("Raum");
+        grid.getColumnByKey("datum").setSortProperty("start");
+        grid.getColumnByKey("organizerId").setSortProperty("organizer");
+        grid.setDataProvider(dataProvider);
         grid.asSingleSelect().addValueChangeListener(event ->
             meetingForm.showMeeting(grid.asSingleSelect().getValue()));
         grid.setSizeFull();
@@ -75,7 +84,20 @@ public class MeetingView extends VerticalLayout {
     }
 
     public void updateList() {
-        grid.setItems(service.findAll(filterText.getValue()));
+        dataProvider.refreshAll();
+    }
+
+    /**
+     * Updates the grid after a meeting has been changed in any session.
+     * A changed meeting is replaced in place, other changes may move rows
+     * and reload the visible page.
+     */
+    public void meetingChanged(MeetingChangeEvent event) {
+        if (event.getType() == ChangeEvent.Type.UPDATED) {
+            dataProvider.refreshItem(event.getItem());
+        } else {
+            dataProvider.refreshAll();
+        }
     }
     
     public void setParticipantView(ParticipantView v) {
@@ -0,0 +1,511 @@
+/*
+ * Copyright 2022 dass IT GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.dassit.meetingsmanager;
+
+import java.lang.management.ManagementFactory;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import javax.mail.MessagingException;
+import javax.mail.SendFailedException;
+import javax.mail.internet.MimeMessage;
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+import com.j256.ormlite.dao.Dao;
+import com.j256.ormlite.dao.DaoManager;
+import com.j256.ormlite.misc.TransactionManager;
+
+/**
+ * Sends the invitations queued in the notification outbox. Saving a new
+ * meeting adds a {@link NotificationJob} in the same transaction and
+ * wakes up the dispatcher, which turns the job into one
+ * {@link MailDelivery} per recipient. The deliveries are sent by a
+ * bounded pool of workers, each sending a batch of mails over one
+ * connection. Failed deliveries are retried per recipient with
+ * increasing delays; when no delivery of a meeting is pending any more,
+ * the meeting is marked as notified. The dispatcher only wakes up for
+ * saves, finished batches, retries and meetings inserted by other
+ * programs, it does not poll the meetings.
+ * Started and stopped by the {@link ApplicationListener}.
+ */
+public class NotificationDispatcher {
+	private static final Logger LOGGER = Logger.getLogger(NotificationDispatcher.class.getName());
+	private static NotificationDispatcher instance;
+
+	private static final int BATCH_SIZE = 50;
+	private static final long FIRST_RETRY_DELAY = 60000L;
+	private static final long MAX_RETRY_DELAY = 3600000L;
+	private static final String METRICS_NAME = "de.dassit.meetingsmanager:type=MailMetrics";
+
+	private ScheduledExecutorService executor;
+	private ThreadPoolExecutor workers;
+	private ScheduledFuture<?> retry;
+	private MailTransport transport;
+	private InvitationMailer mailer;
+	private Dao<NotificationJob, Integer> dao;
+	private Dao<MailDelivery, Integer> deliveryDao;
+	private int workerCount;
+	private int sessionSize;
+	private int maxAttempts;
+
+	private final MailMetrics metrics = new MailMetrics();
+	/* a drain is queued and has not started yet */
+	private final AtomicBoolean pending = new AtomicBoolean();
+	/* meetings may have been inserted outside of the application, see queueExternal() */
+	private final AtomicBoolean externalMeetings = new AtomicBoolean(true);
+	/* batches handed to the workers and not finished yet */
+	private final AtomicInteger batches = new AtomicInteger();
+	/* ids of the deliveries in these batches, guarded by itself */
+	private final Set<Integer> inFlight = new HashSet<Integer>();
+
+	public static synchronized NotificationDispatcher getInstance() {
+		if (instance == null) {
+			instance = new NotificationDispatcher();
+		}
+		return instance;
+	}
+
+	/**
+	 * Starts sending to the SMTP server of the configuration, or to a
+	 * {@link LocalMailTransport} with mailTransport=local.
+	 */
+	public void start() {
+		if ("local".equals(Configuration.getInstance().get("mailTransport"))) {
+			start(new LocalMailTransport());
+		} else {
+			start(SmtpTransport.fromConfiguration());
+		}
+	}
+
+	/**
+	 * Starts the background threads and sends the jobs and deliveries left
+	 * from before. The settings mailWorkers, mailSessionSize and
+	 * mailMaxAttempts of the configuration size the pool.
+	 *
+	 * @param transport sends the mails, e.g. to a local stand-in of the
+	 *                  mail server
+	 */
+	public synchronized void start(MailTransport transport) {
+		if (executor != null) {
+			return;
+		}
+		mailer = InvitationMailer.fromConfiguration(transport);
+		if (mailer == null) {
+			return;
+		}
+		this.transport = transport;
+		Configuration config = Configuration.getInstance();
+		workerCount = Math.max(1, config.getInt("mailWorkers", 4));
+		sessionSize = Math.max(1, config.getInt("mailSessionSize", 50));
+		maxAttempts = Math.max(1, config.getInt("mailMaxAttempts", 10));
+		try {
+			dao = DaoManager.createDao(DbConnection.getConnectionSource(), NotificationJob.class);
+			deliveryDao = DaoManager.createDao(DbConnection.getConnectionSource(), MailDelivery.class);
+		} catch (SQLException e) {
+			LOGGER.log(Level.SEVERE, e.getMessage(), e);
+			return;
+		}
+		executor = Executors.newSingleThreadScheduledExecutor(threadFactory("notification-dispatcher"));
+		// at most one batch waits for every busy worker
+		workers = new ThreadPoolExecutor(workerCount, workerCount, 60, TimeUnit.SECONDS,
+				new ArrayBlockingQueue<Runnable>(workerCount), threadFactory("mail-worker"));
+		workers.allowCoreThreadTimeOut(true);
+		try {
+			ManagementFactory.getPlatformMBeanServer().registerMBean(metrics, new ObjectName(METRICS_NAME));
+		} catch (JMException e) {
+			LOGGER.log(Level.WARNING, e.getMessage(), e);
+		}
+		wakeUp();
+	}
+
+	/**
+	 * Stops the background threads, waiting for running batches to finish.
+	 * Unsent deliveries stay pending in the database.
+	 */
+	public void stop() {
+		ScheduledExecutorService running;
+		ThreadPoolExecutor runningWorkers;
+		synchronized (this) {
+			running = executor;
+			runningWorkers = workers;
+			executor = null;
+			workers = null;
+		}
+		if (running == null) {
+			return;
+		}
+		running.shutdownNow();
+		runningWorkers.shutdownNow();
+		try {
+			running.awaitTermination(10, TimeUnit.SECONDS);
+			runningWorkers.awaitTermination(30, TimeUnit.SECONDS);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		try {
+			ManagementFactory.getPlatformMBeanServer().unregisterMBean(new ObjectName(METRICS_NAME));
+		} catch (JMException e) {
+			LOGGER.log(Level.FINE, e.getMessage(), e);
+		}
+	}
+
+	/**
+	 * Makes the dispatcher look for due jobs and deliveries, e.g. after a
+	 * meeting has been saved. Several calls before the dispatcher runs are
+	 * combined.
+	 */
+	public synchronized void wakeUp() {
+		if (executor != null && pending.compareAndSet(false, true)) {
+			executor.execute(new Runnable() {
+				@Override
+				public void run() {
+					drain();
+				}
+			});
+		}
+	}
+
+	/**
+	 * Makes the dispatcher look for meetings inserted outside of the
+	 * application, which have no job in the outbox. Called when the
+	 * meeting cache finds new rows it has not written itself.
+	 */
+	public void meetingsInserted() {
+		externalMeetings.set(true);
+		wakeUp();
+	}
+
+	public MailMetrics getMetrics() {
+		return metrics;
+	}
+
+	private void drain() {
+		pending.set(false);
+		try {
+			if (externalMeetings.getAndSet(false)) {
+				queueExternal();
+			}
+			expandJobs();
+			dispatch();
+			metrics.setQueueDepth(
+					deliveryDao.queryBuilder().where().eq("state", MailDelivery.State.PENDING).countOf());
+			scheduleRetry();
+		} catch (SQLException | RuntimeException e) {
+			LOGGER.log(Level.SEVERE, e.getMessage(), e);
+		}
+	}
+
+	/**
+	 * Adds jobs for the upcoming meetings that have not been notified and
+	 * have neither a job nor deliveries, i.e. were inserted into the
+	 * database by other programs. Meetings saved by the application get
+	 * their job in the same transaction.
+	 */
+	private void queueExternal() throws SQLException {
+		String now = String.valueOf(System.currentTimeMillis());
+		int added = dao.updateRaw("INSERT INTO notification_outbox (meeting_id, created) SELECT id, ? FROM meetings"
+				+ " WHERE notified = 0 AND \"end\" > ?"
+				+ " AND NOT EXISTS (SELECT 1 FROM notification_outbox o WHERE o.meeting_id = meetings.id)"
+				+ " AND NOT EXISTS (SELECT 1 FROM mail_delivery d WHERE d.meeting_id = meetings.id)", now, now);
+		if (added > 0) {
+			LOGGER.info("Queued invitations for " + added + " meetings inserted outside of the application");
+		}
+	}
+
+	/**
+	 * Replaces the jobs in the outbox by the deliveries of their meetings.
+	 */
+	private void expandJobs() throws SQLException {
+		List<NotificationJob> jobs;
+		do {
+			jobs = dao.queryBuilder().orderBy("id", true).limit((long) BATCH_SIZE).query();
+			for (NotificationJob job : jobs) {
+				if (Thread.currentThread().isInterrupted()) {
+					return;
+				}
+				expand(job);
+			}
+		} while (jobs.size() == BATCH_SIZE);
+	}
+
+	private void expand(final NotificationJob job) throws SQLException {
+		MeetingService meetingService = MeetingService.getInstance();
+		Meeting m = meetingService.getById(job.getMeetingId());
+		if (m == null) {
+			// the save may be committed but not published to the cache yet;
+			// if the read fails, the job stays for the next drain
+			m = meetingService.readFromDb(job.getMeetingId());
+			if (m == null) {
+				LOGGER.info("Meeting " + job.getMeetingId() + " has been deleted, no invitations are sent");
+			}
+		}
+		// nothing to send if deleted or already sent
+		final List<MailDelivery> deliveries = m == null || m.isNotified() ? new ArrayList<MailDelivery>()
+				: mailer.deliveries(m);
+		TransactionManager.callInTransaction(dao.getConnectionSource(), new Callable<Void>() {
+			@Override
+			public Void call() throws Exception {
+				for (MailDelivery d : deliveries) {
+					deliveryDao.create(d);
+				}
+				dao.delete(job);
+				return null;
+			}
+		});
+		if (m != null && !m.isNotified() && deliveries.isEmpty()) {
+			meetingService.markNotified(m.getId());
+		}
+	}
+
+	/**
+	 * Hands due deliveries to the workers, as long as the pool has room.
+	 */
+	private void dispatch() throws SQLException {
+		int free;
+		while ((free = 2 * workerCount - batches.get()) > 0 && !Thread.currentThread().isInterrupted()) {
+			long limit;
+			List<MailDelivery> due;
+			List<MailDelivery> claimed = new ArrayList<MailDelivery>();
+			// a worker records the result before releasing a delivery,
+			// so a released delivery is never read as pending here
+			synchronized (inFlight) {
+				limit = (long) free * sessionSize + inFlight.size();
+				due = deliveryDao.queryBuilder().orderBy("next_attempt", true).orderBy("id", true).limit(limit)
+						.where().eq("state", MailDelivery.State.PENDING).and()
+						.le("next_attempt", System.currentTimeMillis()).query();
+				for (MailDelivery d : due) {
+					if (inFlight.add(d.getId())) {
+						claimed.add(d);
+					}
+				}
+			}
+			metrics.claimed(claimed.size());
+			for (int i = 0; i < claimed.size(); i += sessionSize) {
+				submit(new ArrayList<MailDelivery>(claimed.subList(i, Math.min(i + sessionSize, claimed.size()))));
+			}
+			if (claimed.isEmpty() || due.size() < limit) {
+				return;
+			}
+		}
+	}
+
+	private void submit(final List<MailDelivery> batch) {
+		ThreadPoolExecutor pool;
+		synchronized (this) {
+			pool = workers;
+		}
+		batches.incrementAndGet();
+		try {
+			if (pool == null) {
+				throw new RejectedExecutionException("stopped");
+			}
+			pool.execute(new Runnable() {
+				@Override
+				public void run() {
+					try {
+						deliver(batch);
+					} finally {
+						batches.decrementAndGet();
+						wakeUp();
+					}
+				}
+			});
+		} catch (RejectedExecutionException e) {
+			batches.decrementAndGet();
+			release(batch);
+		}
+	}
+
+	/**
+	 * Sends a batch of deliveries over one connection and records the
+	 * result of every delivery.
+	 */
+	private void deliver(List<MailDelivery> batch) {
+		MeetingService meetingService = MeetingService.getInstance();
+		IcsCache calendars = IcsCache.getInstance();
+		Set<Integer> meetingIds = new HashSet<Integer>();
+		MailTransport.Connection connection = null;
+		MessagingException connectError = null;
+		long started = System.currentTimeMillis();
+		int sent = 0;
+		try {
+			for (MailDelivery d : batch) {
+				if (Thread.currentThread().isInterrupted()) {
+					break;
+				}
+				Meeting m = meetingService.getById(d.getMeetingId());
+				if (m == null) {
+					m = meetingService.readFromDb(d.getMeetingId());
+				}
+				if (m == null) {
+					// deleted, the delete has removed the deliveries as well
+					deliveryDao.delete(d);
+					continue;
+				}
+				meetingIds.add(m.getId());
+				long begin = System.currentTimeMillis();
+				try {
+					MimeMessage message = mailer.createMessage(m, d, calendars.document(m));
+					if (connectError != null) {
+						throw connectError;
+					}
+					if (connection == null || !connection.isConnected()) {
+						// the server may close the connection after an error
+						if (connection != null) {
+							connection.close();
+							connection = null;
+						}
+						try {
+							connection = transport.connect();
+						} catch (MessagingException e) {
+							// the rest of the batch would fail the same way
+							connectError = e;
+							throw e;
+						}
+					}
+					connection.send(message);
+					long now = System.currentTimeMillis();
+					d.delivered(now);
+					metrics.sent(now - d.getCreated(), now - begin);
+					sent++;
+				} catch (MessagingException e) {
+					failed(d, e);
+				}
+				deliveryDao.update(d);
+			}
+		} catch (SQLException | RuntimeException e) {
+			LOGGER.log(Level.SEVERE, e.getMessage(), e);
+		} finally {
+			if (connection != null) {
+				connection.close();
+			}
+			release(batch);
+		}
+		LOGGER.info("Sent " + sent + " of " + batch.size() + " invitations in "
+				+ (System.currentTimeMillis() - started) + " ms, " + metrics);
+
+		for (Integer id : meetingIds) {
+			try {
+				completeIfDone(id);
+			} catch (SQLException e) {
+				LOGGER.log(Level.SEVERE, e.getMessage(), e);
+			}
+		}
+	}
+
+	private void failed(MailDelivery d, MessagingException e) {
+		boolean rejected = e instanceof SendFailedException
+				&& ((SendFailedException) e).getInvalidAddresses() != null
+				&& ((SendFailedException) e).getInvalidAddresses().length > 0;
+		if (rejected || d.getAttempts() + 1 >= maxAttempts) {
+			d.failed(e.getMessage(), -1);
+			metrics.failed();
+			LOGGER.severe("Giving up invitation to " + d.getRecipient() + " for meeting " + d.getMeetingId()
+					+ " after " + d.getAttempts() + " attempts: " + e.getMessage());
+			return;
+		}
+		long delay = Math.min(MAX_RETRY_DELAY, FIRST_RETRY_DELAY << Math.min(d.getAttempts(), 10));
+		d.failed(e.getMessage(), System.currentTimeMillis() + delay);
+		metrics.retried();
+		LOGGER.warning("Invitation to " + d.getRecipient() + " for meeting " + d.getMeetingId() + " failed, attempt "
+				+ d.getAttempts() + ", next try in " + delay / 1000 + " s: " + e.getMessage());
+	}
+
+	private void release(List<MailDelivery> batch) {
+		synchronized (inFlight) {
+			for (MailDelivery d : batch) {
+				inFlight.remove(d.getId());
+			}
+		}
+		metrics.released(batch.size());
+	}
+
+	/**
+	 * Marks a meeting as notified when none of its deliveries is pending.
+	 * Like {@link #expand(NotificationJob)} it reads meetings missing from the cache from
+	 * the database.
+	 */
+	private void completeIfDone(Integer meetingId) throws SQLException {
+		long open = deliveryDao.queryBuilder().where().eq("meeting_id", meetingId).and()
+				.eq("state", MailDelivery.State.PENDING).countOf();
+		if (open == 0) {
+			Meeting m = MeetingService.getInstance().getById(meetingId);
+			if (m == null) {
+				m = MeetingService.getInstance().readFromDb(meetingId);
+			}
+			if (m != null && !m.isNotified()) {
+				MeetingService.getInstance().markNotified(meetingId);
+			}
+		}
+	}
+
+	/**
+	 * Wakes the dispatcher up again when the next failed delivery is due.
+	 * Due deliveries that are not sent yet are picked up when a batch has
+	 * finished.
+	 */
+	private void scheduleRetry() throws SQLException {
+		long now = System.currentTimeMillis();
+		long next = deliveryDao.queryRawValue("SELECT COALESCE(MIN(next_attempt), -1) FROM mail_delivery"
+				+ " WHERE state = ? AND next_attempt > ?", MailDelivery.State.PENDING.name(), String.valueOf(now));
+		if (next < 0) {
+			return;
+		}
+		synchronized (this) {
+			if (executor == null) {
+				return;
+			}
+			if (retry != null) {
+				retry.cancel(false);
+			}
+			retry = executor.schedule(new Runnable() {
+				@Override
+				public void run() {
+					wakeUp();
+				}
+			}, next - now, TimeUnit.MILLISECONDS);
+		}
+	}
+
+	private static ThreadFactory threadFactory(final String name) {
+		final AtomicInteger count = new AtomicInteger();
+		return new ThreadFactory() {
+			@Override
+			public Thread newThread(Runnable r) {
+				Thread t = new Thread(r, name + "-" + count.incrementAndGet());
+				t.setDaemon(true);
+				return t;
+			}
+		};
+	}
+}
@@ -0,0 +1,53 @@
+/*
+ * Copyright 2022 dass IT GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.dassit.meetingsmanager;
+
+import com.j256.ormlite.field.DatabaseField;
+import com.j256.ormlite.table.DatabaseTable;
+
+/**
+ * DAO class for an entry of the notification outbox: the invitations
+ * for a meeting that still have to be sent, see {@link NotificationDispatcher}.
+ */
+@DatabaseTable(tableName = "notification_outbox")
+public class NotificationJob {
+	@DatabaseField(generatedId = true)
+	int id;
+	@DatabaseField(columnName = "meeting_id", canBeNull = false)
+	int meetingId;
+	@DatabaseField(canBeNull = false)
+	long created;
+
+	public NotificationJob() {
+	}
+
+	public NotificationJob(int meetingId) {
+		this.meetingId = meetingId;
+		this.created = System.currentTimeMillis();
+	}
+
+	public int getId() {
+		return id;
+	}
+
+	public int getMeetingId() {
+		return meetingId;
+	}
+
+	public long getCreated() {
+		return created;
+	}
+}
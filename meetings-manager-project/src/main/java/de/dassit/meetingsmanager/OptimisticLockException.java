@@ -0,0 +1,29 @@
+/*
+ * Copyright 2022 dass IT GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.dassit.meetingsmanager;
+
+/**
+ * Thrown when a meeting or participant is saved or deleted, but has been
+ * changed by someone else since it was read. The version column of the
+ * row no longer matches the version of the object.
+ */
+public class OptimisticLockException extends RuntimeException {
+	private static final long serialVersionUID = 1L;
+
+	public OptimisticLockException(String message) {
+		super(message);
+	}
+}
@@ -52,15 +52,23 @@ public class Participant implements Serializable, Cloneable {
 	@DatabaseField(canBeNull=true)
     private String password = "";
 
+	@DatabaseField(version=true)
+    private int version;
+
+    /* set on the instances shared by ParticipantService */
+    private transient boolean frozen;
+
     public Integer getId() {
         return id;
     }
 
     public void setId(Integer id) {
+        checkFrozen();
         this.id = id;
     }
 
     public void setUid(String newUid) {
+    	checkFrozen();
     	uid = newUid;
     }
     
@@ -83,6 +91,7 @@ public class Participant implements Serializable, Cloneable {
      * @param email new value of email
      */
     public void setEmail(String email) {
+        checkFrozen();
         this.email = email;
     }
 
@@ -101,6 +110,7 @@ public class Participant implements Serializable, Cloneable {
      * @param status new value of status
      */
     public void setExternal(boolean aBool) {
+        checkFrozen();
         this.external = aBool;
     }
 
@@ -119,6 +129,7 @@ public class Participant implements Serializable, Cloneable {
      * @param status new value of status
      */
     public void setActive(boolean aBool) {
+        checkFrozen();
         this.active = aBool;
     }
 
@@ -137,6 +148,7 @@ public class Participant implements Serializable, Cloneable {
      * @param status new value of status
      */
     public void setPermanent(boolean aBool) {
+        checkFrozen();
         this.permanent = aBool;
     }
 
@@ -155,6 +167,7 @@ public class Participant implements Serializable, Cloneable {
      * @param displayName new value of displayName
      */
     public void setDisplayName(String displayName) {
+        checkFrozen();
         this.displayName = displayName;
     }
 
@@ -163,9 +176,17 @@ public class Participant implements Serializable, Cloneable {
 	}
 
 	public void setPassword(String password) {
+		checkFrozen();
 		this.password = password;
 	}
 
+    /**
+     * @return the number of updates of this participant, checked on every save
+     */
+    public int getVersion() {
+        return version;
+    }
+
 	public boolean isPersisted() {
         return id != null;
     }
@@ -193,9 +214,29 @@ public class Participant implements Serializable, Cloneable {
         return hash;
     }
 
+    /**
+     * Makes this instance read-only. Changing a frozen participant throws
+     * an IllegalStateException; {@link #clone()} returns a changeable copy.
+     */
+    public void freeze() {
+        frozen = true;
+    }
+
+    public boolean isFrozen() {
+        return frozen;
+    }
+
+    private void checkFrozen() {
+        if (frozen) {
+            throw new IllegalStateException("Participant " + id + " is shared and cannot be changed, use a clone");
+        }
+    }
+
     @Override
     public Participant clone() throws CloneNotSupportedException {
-        return (Participant) super.clone();
+        Participant c = (Participant) super.clone();
+        c.frozen = false;
+        return c;
     }
 
     @Override
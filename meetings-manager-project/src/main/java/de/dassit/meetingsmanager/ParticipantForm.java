@@ -18,6 +18,7 @@ package de.dassit.meetingsmanager;
 import com.vaadin.flow.component.button.Button;
 import com.vaadin.flow.component.button.ButtonVariant;
 import com.vaadin.flow.component.formlayout.FormLayout;
+import com.vaadin.flow.component.notification.Notification;
 import com.vaadin.flow.component.orderedlayout.HorizontalLayout;
 import com.vaadin.flow.component.textfield.TextField;
 import com.vaadin.flow.component.checkbox.Checkbox;
@@ -86,15 +87,24 @@ public class ParticipantForm extends FormLayout {
 
     private void save() {
         Participant t = binder.getBean();
-        participantService.save(t);
-        mainView.updateList();
+        try {
+            participantService.save(t);
+        } catch (OptimisticLockException e) {
+            showConflict();
+            return;
+        }
+        // the list is updated by the ParticipantChangeEvent
         setParticipant(null);
     }
 
     private void delete() {
         Participant t = binder.getBean();
-        participantService.delete(t);
-        mainView.updateList();
+        try {
+            participantService.delete(t);
+        } catch (OptimisticLockException e) {
+            showConflict();
+            return;
+        }
         setParticipant(null);
     }
 
@@ -115,6 +125,15 @@ public class ParticipantForm extends FormLayout {
 		return this;
 	}
 
+    private void showConflict() {
+        Notification n = new Notification(
+                "Der Teilnehmer wurde inzwischen von jemand anderem geändert oder gelöscht. "
+                        + "Bitte den Teilnehmer neu öffnen und die Änderungen wiederholen.",
+                5000);
+        n.open();
+        mainView.updateList();
+    }
+
 	public void focus() {
 		uid.focus();
 	}
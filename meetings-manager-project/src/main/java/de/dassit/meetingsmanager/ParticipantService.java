@@ -17,16 +17,28 @@ package de.dassit.meetingsmanager;
 
 import java.sql.SQLException;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
 import com.j256.ormlite.dao.Dao;
 import com.j256.ormlite.dao.DaoManager;
-import com.j256.ormlite.table.TableUtils;
+import com.j256.ormlite.misc.TransactionManager;
+import com.j256.ormlite.stmt.DeleteBuilder;
+import com.j256.ormlite.stmt.QueryBuilder;
+import com.vaadin.flow.data.provider.QuerySortOrder;
+import com.vaadin.flow.data.provider.SortDirection;
 
 /**
  * ParticipantService is a singleton class used to get a list
@@ -38,50 +50,152 @@ public class ParticipantService {
 
 	private static ParticipantService instance;
 	private static final Logger LOGGER = Logger.getLogger(ParticipantService.class.getName());
+	/* columns that findPage() can sort by */
+	private static final Set<String> SORT_COLUMNS = new HashSet<String>(
+			Arrays.asList("uid", "displayName", "email", "permanent", "external"));
 
-	private HashMap<Integer, Participant> contacts = new HashMap<>();
+	/* SQLite allows at most 999 parameters per statement */
+	private static final int IN_BATCH_SIZE = 500;
+	/* beyond this many changes a reader that has fallen behind rescans everything */
+	private static final int MAX_CHANGES = 4096;
+
+	/* the cached participants, replaced as a whole on every change */
+	private volatile Snapshot snapshot = new Snapshot(0);
+	/* the last generation passed to changedSince(), older changes are pruned */
+	private volatile int readerGeneration;
+	private ChangeTracker<Participant> tracker;
+	/* serialize writes to the same participant, see save() and delete() */
+	private final StripedLocks locks = new StripedLocks(64);
 
 	private Dao<Participant, Integer> dao;
 
 	private ParticipantService() {
 		try {
+			SchemaMigrations.migrate(DbConnection.getConnectionSource());
 			dao = DaoManager.createDao(DbConnection.getConnectionSource(), Participant.class);
-			TableUtils.createTableIfNotExists(dao.getConnectionSource(), Participant.class);
+			tracker = new ChangeTracker<Participant>(dao, "participant");
 		} catch (SQLException e) {
 			e.printStackTrace();
 			dao = null;
 		}
 	}
 
-	public static ParticipantService getInstance() {
+	public static synchronized ParticipantService getInstance() {
 		if (instance == null) {
 			instance = new ParticipantService();
 		}
 		return instance;
 	}
 
-	public void loadFromDb() {
+	public synchronized void loadFromDb() {
 		List<Participant> result = null;
 
 		try {
 			// result = dao.queryForEq("external", false);
+			tracker.reset();
 			result = dao.queryForAll();
 		} catch (SQLException e) {
 			e.printStackTrace();
 			return;
 		}
 
-		contacts = new HashMap<Integer, Participant>();
+		Snapshot next = new Snapshot(snapshot.generation + 1);
+		next.putAll(result);
+		snapshot = next;
+		EventBus.getInstance().publish(new ParticipantChangeEvent(ChangeEvent.Type.RELOADED, null));
+	}
+
+	/**
+	 * Brings the cache up to date. The first call loads all participants,
+	 * later calls only read the rows changed outside of the application
+	 * since the last check (see {@link ChangeTracker}). Only if that is due,
+	 * the caller has to wait for the lock.
+	 */
+	public void syncWithDb() {
+		if (tracker.isCheckDue()) {
+			sync();
+		}
+	}
+
+	private synchronized void sync() {
+		if (!tracker.isLoaded()) {
+			loadFromDb();
+			return;
+		}
+		if (!tracker.isCheckDue()) {
+			return;
+		}
+		try {
+			List<Participant> changed = tracker.queryChanges();
+			Snapshot next = snapshot;
+			List<ParticipantChangeEvent> events = new ArrayList<ParticipantChangeEvent>();
+			if (!changed.isEmpty()) {
+				next = new Snapshot(snapshot, readerGeneration);
+				for (Participant t : changed) {
+					ChangeEvent.Type type = next.contacts.containsKey(t.getId()) ? ChangeEvent.Type.UPDATED
+							: ChangeEvent.Type.CREATED;
+					next.put(t);
+					events.add(new ParticipantChangeEvent(type, next.contacts.get(t.getId())));
+				}
+			}
+			if (!tracker.matches(next.contacts.keys())) {
+				// rows have been deleted outside of the application
+				loadFromDb();
+				return;
+			}
+			snapshot = next;
+			for (ParticipantChangeEvent event : events) {
+				EventBus.getInstance().publish(event);
+			}
+		} catch (SQLException e) {
+			LOGGER.log(Level.SEVERE, e.getMessage(), e);
+		}
+	}
+
+	/**
+	 * @return the current snapshot, after loading the cache or checking
+	 *         for external changes if that is due
+	 */
+	private Snapshot current() {
+		syncWithDb();
+		return snapshot;
+	}
+
+	/**
+	 * @return a counter that changes whenever the cached participants change
+	 */
+	public int getGeneration() {
+		return current().generation;
+	}
 
-		for (Participant t : result) {
-			contacts.put(t.getId(), t);
+	/**
+	 * @return the ids of the participants changed or deleted since the given
+	 *         generation, or null if the cache has been reloaded or the
+	 *         changes have been pruned since then. Changes up to the given
+	 *         generation are pruned from later snapshots, so a caller must
+	 *         not ask for an older generation afterwards.
+	 */
+	public Set<Integer> changedSince(int generation) {
+		Snapshot current = snapshot;
+		if (generation < current.prunedAt) {
+			return null;
+		}
+		if (generation > readerGeneration) {
+			readerGeneration = generation;
+		}
+		Set<Integer> result = new HashSet<Integer>();
+		for (Map.Entry<Integer, Integer> e : current.changedAt.entrySet()) {
+			if (e.getValue() > generation) {
+				result.add(e.getKey());
+			}
 		}
+		return result;
 	}
 
 	/**
 	 * @return all available Participant objects.
 	 */
-	public synchronized List<Participant> findAll() {
+	public List<Participant> findAll() {
 		return findAll(null);
 	}
 
@@ -100,36 +214,115 @@ public class ParticipantService {
 		participant.removeIf(t -> !t.isActive() && !t.isExternal());
 	}
 	
-	public synchronized Participant getByUid(String uid) {
-		loadFromDb();
-		for (Participant t : contacts.values()) {
-			if (t.getUid().equals(uid)) {
-				return t;
+	/**
+	 * @return the cached instance for the given database id, or null
+	 */
+	public Participant getById(Integer id) {
+		if (id == null) {
+			return null;
+		}
+		return snapshot.contacts.get(id);
+	}
+
+	/**
+	 * Resolves participant ids, e.g. foreign keys read with meetings, to
+	 * the cached instances, so every participant exists only once in
+	 * memory. Participants added outside of the application since the
+	 * last check are read with one query per {@value #IN_BATCH_SIZE} ids
+	 * and put into the cache. Saves and deletes replace or remove the
+	 * cached instances, so later calls never return outdated ones.
+	 *
+	 * @return the participants by id, without the ids that do not exist
+	 */
+	public Map<Integer, Participant> resolveAll(Collection<Integer> ids) {
+		Snapshot current = current();
+		Map<Integer, Participant> result = new HashMap<Integer, Participant>(ids.size() * 2);
+		Set<Integer> unknown = new LinkedHashSet<Integer>();
+		for (Integer id : ids) {
+			if (id == null) {
+				continue;
+			}
+			Participant cached = current.contacts.get(id);
+			if (cached != null) {
+				result.put(id, cached);
+			} else {
+				unknown.add(id);
+			}
+		}
+		if (unknown.isEmpty()) {
+			return result;
+		}
+		List<Integer> missing = new ArrayList<Integer>(unknown);
+
+		try {
+			List<Participant> loaded = new ArrayList<Participant>();
+			for (int i = 0; i < missing.size(); i += IN_BATCH_SIZE) {
+				List<Integer> batch = missing.subList(i, Math.min(i + IN_BATCH_SIZE, missing.size()));
+				loaded.addAll(dao.queryBuilder().where().in("id", batch).query());
+			}
+			if (loaded.isEmpty()) {
+				return result;
+			}
+			List<ParticipantChangeEvent> events = new ArrayList<ParticipantChangeEvent>();
+			synchronized (this) {
+				Snapshot next = new Snapshot(snapshot, readerGeneration);
+				for (Participant t : loaded) {
+					next.put(t);
+					Participant cached = next.contacts.get(t.getId());
+					result.put(t.getId(), cached);
+					events.add(new ParticipantChangeEvent(ChangeEvent.Type.CREATED, cached));
+				}
+				snapshot = next;
+			}
+			for (ParticipantChangeEvent event : events) {
+				EventBus.getInstance().publish(event);
 			}
+		} catch (SQLException e) {
+			LOGGER.log(Level.SEVERE, e.getMessage(), e);
 		}
-		return null;
+		return result;
+	}
+
+	/**
+	 * Looks up a participant by user name in the cache.
+	 *
+	 * @return the cached instance, or null
+	 */
+	public Participant getByUid(String uid) {
+		Snapshot s = current();
+		return uid == null ? null : s.byUid.get(uid);
+	}
+
+	/**
+	 * Looks up a participant by e-mail address (ignoring case) in the cache.
+	 * If several participants share the address, one of them is returned.
+	 *
+	 * @return the cached instance, or null
+	 */
+	public Participant getByEmail(String email) {
+		Snapshot s = current();
+		return email == null ? null : s.byEmail.get(email.toLowerCase(Locale.ROOT));
 	}
 
 	/**
 	 * Finds all participants that match the given filter.
+	 * The participants are shared and read-only (see {@link Participant#freeze()}),
+	 * callers have to clone them before making changes.
 	 *
 	 * @param stringFilter filter that returned objects should match or null/empty
-	 *                     string if all objects should be returned.
+	 *                     string if all objects should be returned. Matches
+	 *                     the user name, display name or e-mail address.
 	 * @return list a Participant objects
 	 */
-	public synchronized List<Participant> findAll(String stringFilter) {
-		if (stringFilter == null || stringFilter.equals(""))
-			loadFromDb();
-		ArrayList<Participant> arrayList = new ArrayList<>();
-		for (Participant contact : contacts.values()) {
-			try {
-				boolean passesFilter = (stringFilter == null || stringFilter.isEmpty())
-						|| contact.toString().toLowerCase().contains(stringFilter.toLowerCase());
-				if (passesFilter) {
-					arrayList.add(contact.clone());
-				}
-			} catch (CloneNotSupportedException ex) {
-				Logger.getLogger(ParticipantService.class.getName()).log(Level.SEVERE, null, ex);
+	public List<Participant> findAll(String stringFilter) {
+		Snapshot s = current();
+		ArrayList<Participant> arrayList;
+		if (stringFilter == null || stringFilter.isEmpty()) {
+			arrayList = new ArrayList<>(s.contacts.values());
+		} else {
+			arrayList = new ArrayList<>();
+			for (Integer id : s.searchIndex.search(stringFilter)) {
+				arrayList.add(s.contacts.get(id));
 			}
 		}
 		Collections.sort(arrayList, new Comparator<Participant>() {
@@ -151,72 +344,244 @@ public class ParticipantService {
 	 * @param maxresults   maximum result count
 	 * @return list a Participant objects
 	 */
-	public synchronized List<Participant> findAll(String stringFilter, int start, int maxresults) {
-		ArrayList<Participant> arrayList = new ArrayList<>();
-		for (Participant contact : contacts.values()) {
-			try {
-				boolean passesFilter = (stringFilter == null || stringFilter.isEmpty())
-						|| contact.toString().toLowerCase().contains(stringFilter.toLowerCase());
-				if (passesFilter) {
-					arrayList.add(contact.clone());
+	public List<Participant> findAll(String stringFilter, int start, int maxresults) {
+		List<QuerySortOrder> byUid = Collections.singletonList(new QuerySortOrder("uid", SortDirection.ASCENDING));
+		return findPage(stringFilter, false, start, maxresults, byUid);
+	}
+
+	/**
+	 * Reads one page of the participants matching a filter, for lazy
+	 * loading grids. Without a filter the page is read from the database,
+	 * with a filter the matches from the search index are sorted and paged
+	 * in memory, as they are cached anyway.
+	 *
+	 * @param stringFilter filter on user name, display name or e-mail address,
+	 *                     null or empty for all participants
+	 * @param activeOnly   if true, inactive internal users are left out
+	 * @param start        the index of first result
+	 * @param maxresults   maximum result count
+	 * @param sortOrders   sort properties; participants are sorted by descending id last
+	 * @return list a Participant objects
+	 */
+	public List<Participant> findPage(String stringFilter, boolean activeOnly, int start, int maxresults,
+			List<QuerySortOrder> sortOrders) {
+		if (stringFilter != null && !stringFilter.isEmpty()) {
+			List<Participant> matches = matches(stringFilter, activeOnly);
+			Collections.sort(matches, sortOrder(sortOrders));
+			return MeetingService.page(matches, start, maxresults);
+		}
+		try {
+			QueryBuilder<Participant, Integer> qb = dao.queryBuilder();
+			applyFilter(qb, activeOnly);
+			for (QuerySortOrder order : sortOrders == null ? Collections.<QuerySortOrder>emptyList() : sortOrders) {
+				if (SORT_COLUMNS.contains(order.getSorted())) {
+					qb.orderBy(order.getSorted(), order.getDirection() != SortDirection.DESCENDING);
 				}
-			} catch (CloneNotSupportedException ex) {
-				Logger.getLogger(ParticipantService.class.getName()).log(Level.SEVERE, null, ex);
 			}
+			qb.orderBy("id", false);
+			qb.offset((long) start).limit((long) maxresults);
+			return qb.query();
+		} catch (SQLException e) {
+			LOGGER.log(Level.SEVERE, e.getMessage(), e);
+			return new ArrayList<Participant>();
 		}
-		Collections.sort(arrayList, new Comparator<Participant>() {
+	}
+
+	/**
+	 * @return the number of participants matching the filter, counted in
+	 *         the database without a filter and in the cache with one
+	 */
+	public long count(String stringFilter, boolean activeOnly) {
+		if (stringFilter != null && !stringFilter.isEmpty()) {
+			return matches(stringFilter, activeOnly).size();
+		}
+		try {
+			QueryBuilder<Participant, Integer> qb = dao.queryBuilder();
+			applyFilter(qb, activeOnly);
+			return dao.countOf(qb.setCountOf(true).prepare());
+		} catch (SQLException e) {
+			LOGGER.log(Level.SEVERE, e.getMessage(), e);
+			return 0;
+		}
+	}
+
+	private void applyFilter(QueryBuilder<Participant, Integer> qb, boolean activeOnly) throws SQLException {
+		if (activeOnly) {
+			// the same participants as removeInactive() keeps
+			qb.where().raw("(active = 1 OR external = 1)");
+		}
+	}
+
+	/**
+	 * @return the cached participants found by the search index, without
+	 *         inactive internal users if activeOnly is set
+	 */
+	private List<Participant> matches(String stringFilter, boolean activeOnly) {
+		Snapshot s = current();
+		List<Participant> result = new ArrayList<Participant>();
+		for (Integer id : s.searchIndex.search(stringFilter)) {
+			Participant t = s.contacts.get(id);
+			if (!activeOnly || t.isActive() || t.isExternal()) {
+				result.add(t);
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * @return a comparator with the same order as the ORDER BY clause of
+	 *         {@link #findPage(String, boolean, int, int, List)}
+	 */
+	private static Comparator<Participant> sortOrder(final List<QuerySortOrder> sortOrders) {
+		return new Comparator<Participant>() {
 			@Override
 			public int compare(Participant o1, Participant o2) {
-				return o1.getUid().compareTo(o2.getUid());
+				for (QuerySortOrder order : sortOrders == null ? Collections.<QuerySortOrder>emptyList()
+						: sortOrders) {
+					int c = MeetingService.compareNullsFirst(sortKey(o1, order.getSorted()),
+							sortKey(o2, order.getSorted()));
+					if (c != 0) {
+						return order.getDirection() == SortDirection.DESCENDING ? -c : c;
+					}
+				}
+				return o2.getId().compareTo(o1.getId());
 			}
-		});
-		int end = start + maxresults;
-		if (end > arrayList.size()) {
-			end = arrayList.size();
+		};
+	}
+
+	private static Comparable<?> sortKey(Participant t, String property) {
+		switch (property) {
+		case "uid":
+			return t.getUid();
+		case "displayName":
+			return t.getDisplayName();
+		case "email":
+			return t.getEmail();
+		case "permanent":
+			return t.isPermanent();
+		case "external":
+			return t.isExternal();
+		default:
+			return null;
 		}
-		return arrayList.subList(start, end);
+	}
+
+	/**
+	 * @return the ids of the participants whose user name, display name or
+	 *         e-mail address contain the given string, from the search index
+	 */
+	public List<Integer> search(String stringFilter) {
+		return current().searchIndex.search(stringFilter);
 	}
 
 	/**
 	 * @return the amount of all customers in the system
 	 */
-	public synchronized long count() {
-		return contacts.size();
+	public long count() {
+		return current().contacts.size();
 	}
 
 	/**
-	 * Deletes a customer from a system
+	 * Deletes a customer from a system. In the same transaction the
+	 * participant is removed from all meetings, so no rows of the join
+	 * table are left behind.
 	 *
 	 * @param value the Participant to be deleted
+	 * @throws OptimisticLockException if the participant has been changed
+	 *                                 since it was read
 	 */
-	public synchronized void delete(Participant value) {
+	public void delete(final Participant value) {
+		if (value.getId() == null) {
+			return;
+		}
+		final MeetingService meetingService = MeetingService.getInstance();
+		int[] stripes = locks.lock(Collections.singletonList(value.getId()));
 		try {
-			dao.delete(value);
+			TransactionManager.callInTransaction(dao.getConnectionSource(), new Callable<Void>() {
+				@Override
+				public Void call() throws Exception {
+					DeleteBuilder<Participant, Integer> db = dao.deleteBuilder();
+					db.where().eq("id", value.getId()).and().eq("version", value.getVersion());
+					if (db.delete() == 0 && dao.idExists(value.getId())) {
+						throw conflict(value);
+					}
+					meetingService.deleteParticipations(value.getId());
+					return null;
+				}
+			});
+			Participant removed;
+			synchronized (this) {
+				Snapshot next = new Snapshot(snapshot, readerGeneration);
+				removed = next.remove(value.getId());
+				snapshot = next;
+			}
+			EventBus.getInstance().publish(
+					new ParticipantChangeEvent(ChangeEvent.Type.DELETED, removed != null ? removed : value));
+			meetingService.participantDeleted(value.getId());
 		} catch (SQLException e) {
-			e.printStackTrace();
+			MeetingService.rethrowConflict(e);
+			LOGGER.log(Level.SEVERE, e.getMessage(), e);
+		} finally {
+			locks.unlock(stripes);
 		}
-		contacts.remove(value.getId());
 	}
 
 	/**
 	 * Persists or updates customer in the system. Also assigns an identifier for
-	 * new Participant instances.
+	 * new Participant instances. Saves of different participants run in
+	 * parallel, saves of the same participant one after the other.
 	 *
 	 * @param entry
+	 * @throws OptimisticLockException if the participant has been changed
+	 *                                 since it was read
 	 */
-	public synchronized Integer save(Participant entry) {
+	public Integer save(Participant entry) {
 		if (entry == null) {
 			LOGGER.log(Level.SEVERE, "Participant is null.");
 			return null;
 		}
+		int[] stripes = locks.lock(Collections.singletonList(entry.getId()));
 		try {
 			entry = (Participant) entry.clone();
-			dao.createOrUpdate(entry);
-		} catch (Exception ex) {
+			ChangeEvent.Type type;
+			if (entry.getId() == null) {
+				dao.create(entry);
+				type = ChangeEvent.Type.CREATED;
+			} else if (dao.update(entry) == 0) {
+				// the version column did not match
+				throw conflict(entry);
+			} else {
+				type = ChangeEvent.Type.UPDATED;
+			}
+			publish(entry, type);
+			return entry.getId();
+		} catch (SQLException | CloneNotSupportedException ex) {
 			throw new RuntimeException(ex);
+		} finally {
+			locks.unlock(stripes);
 		}
-		contacts.put(entry.getId(), entry);
-		return entry.getId();
+	}
+
+	private static OptimisticLockException conflict(Participant t) {
+		return new OptimisticLockException(
+				"Participant " + t.getId() + " has been changed or deleted by someone else");
+	}
+
+	/**
+	 * Puts a participant that has already been written to the
+	 * database into the cache. The instance becomes read-only.
+	 */
+	public void updateCache(Participant entry) {
+		publish(entry, ChangeEvent.Type.UPDATED);
+	}
+
+	private void publish(Participant entry, ChangeEvent.Type type) {
+		synchronized (this) {
+			Snapshot next = new Snapshot(snapshot, readerGeneration);
+			next.put(entry);
+			snapshot = next;
+		}
+		EventBus.getInstance().publish(new ParticipantChangeEvent(type, entry));
 	}
 
 	public void refresh(Participant entry) throws SQLException {
@@ -226,4 +591,131 @@ public class ParticipantService {
 	public Dao<Participant, Integer> getDao() {
 		return dao;
 	}
+
+	/**
+	 * A version of the cache. Writers copy the current snapshot, change
+	 * the copy and publish it through the volatile field; a published
+	 * snapshot and its participants are never changed, so readers need
+	 * no lock.
+	 */
+	private static class Snapshot {
+		final SharedIntMap<Participant> contacts;
+		/* secondary indexes, maintained together with contacts by put() and remove() */
+		final SharedMap<String, Participant> byUid;
+		final SharedMap<String, Participant> byEmail;
+		/* user name, display name and e-mail address for substring searches */
+		SearchIndex searchIndex;
+		/* differs for every published snapshot */
+		final int generation;
+		/* the generation of the last full load */
+		final int loadedAt;
+		/* participant id -> generation of the last change or removal after prunedAt */
+		final HashMap<Integer, Integer> changedAt;
+		/* changes up to this generation are not in changedAt */
+		final int prunedAt;
+
+		Snapshot(int generation) {
+			this.contacts = new SharedIntMap<Participant>();
+			this.byUid = new SharedMap<String, Participant>();
+			this.byEmail = new SharedMap<String, Participant>();
+			this.searchIndex = new SearchIndex();
+			this.generation = generation;
+			this.loadedAt = generation;
+			this.changedAt = new HashMap<Integer, Integer>();
+			this.prunedAt = generation;
+		}
+
+		/**
+		 * @param readerGeneration changes up to this generation are no longer
+		 *                         needed by changedSince()
+		 */
+		Snapshot(Snapshot old, int readerGeneration) {
+			// the maps and the search index share their entries with the old snapshot
+			this.contacts = old.contacts.copy();
+			this.byUid = old.byUid.copy();
+			this.byEmail = old.byEmail.copy();
+			this.searchIndex = old.searchIndex.copy();
+			this.generation = old.generation + 1;
+			this.loadedAt = old.loadedAt;
+			this.changedAt = new HashMap<Integer, Integer>();
+			int pruned = Math.max(old.prunedAt, readerGeneration);
+			for (Map.Entry<Integer, Integer> e : old.changedAt.entrySet()) {
+				if (e.getValue() > pruned) {
+					changedAt.put(e.getKey(), e.getValue());
+				}
+			}
+			if (changedAt.size() > MAX_CHANGES) {
+				changedAt.clear();
+				pruned = old.generation;
+			}
+			this.prunedAt = pruned;
+		}
+
+		void put(Participant t) {
+			t.freeze();
+			Participant current = contacts.get(t.getId());
+			if (current != null && current.getVersion() > t.getVersion()) {
+				// read before a concurrent save was published
+				return;
+			}
+			Participant old = contacts.put(t.getId(), t);
+			if (old != null) {
+				removeKeys(old);
+			}
+			if (t.getUid() != null) {
+				byUid.put(t.getUid(), t);
+			}
+			if (t.getEmail() != null && !t.getEmail().isEmpty()) {
+				byEmail.put(t.getEmail().toLowerCase(Locale.ROOT), t);
+			}
+			searchIndex.put(t.getId(), t.getUid(), t.getDisplayName(), t.getEmail());
+			if (generation > loadedAt) {
+				changedAt.put(t.getId(), generation);
+			}
+		}
+
+		/**
+		 * Adds many participants to an empty snapshot, building the search
+		 * index once at the end.
+		 */
+		void putAll(List<Participant> list) {
+			int[] ids = new int[list.size()];
+			String[][] fields = new String[list.size()][];
+			int n = 0;
+			for (Participant t : list) {
+				t.freeze();
+				if (contacts.put(t.getId(), t) == null) {
+					ids[n] = t.getId();
+					fields[n++] = new String[] { t.getUid(), t.getDisplayName(), t.getEmail() };
+				}
+				if (t.getUid() != null) {
+					byUid.put(t.getUid(), t);
+				}
+				if (t.getEmail() != null && !t.getEmail().isEmpty()) {
+					byEmail.put(t.getEmail().toLowerCase(Locale.ROOT), t);
+				}
+			}
+			searchIndex = SearchIndex.of(Arrays.copyOf(ids, n), Arrays.copyOf(fields, n));
+		}
+
+		Participant remove(Integer id) {
+			Participant old = contacts.remove(id);
+			if (old != null) {
+				removeKeys(old);
+				searchIndex.remove(id);
+				changedAt.put(id, generation);
+			}
+			return old;
+		}
+
+		private void removeKeys(Participant t) {
+			// only if the key still refers to this participant (equals compares ids)
+			if (t.getUid() != null) {
+				byUid.remove(t.getUid(), t);
+			}
+			if (t.getEmail() != null) {
+				byEmail.remove(t.getEmail().toLowerCase(Locale.ROOT), t);
+			}
+		}
+	}
 }
@@ -15,13 +15,14 @@
  */
 package de.dassit.meetingsmanager;
 
-import java.util.List;
+import java.util.Locale;
 
 import com.vaadin.flow.component.button.Button;
 import com.vaadin.flow.component.grid.Grid;
 import com.vaadin.flow.component.orderedlayout.HorizontalLayout;
 import com.vaadin.flow.component.orderedlayout.VerticalLayout;
 import com.vaadin.flow.component.textfield.TextField;
+import com.vaadin.flow.data.provider.DataProvider;
 import com.vaadin.flow.data.value.ValueChangeMode;
 
 /**
@@ -37,6 +38,11 @@ public class ParticipantView extends VerticalLayout {
     private Grid<Participant> grid = new Grid<>(Participant.class);
     private TextField filterText = new TextField();
     private ParticipantForm participantForm = new ParticipantForm(this);
+    // pages of the active participants are fetched from the database while scrolling
+    private DataProvider<Participant, Void> dataProvider = DataProvider.fromCallbacks(
+            query -> service.findPage(filterText.getValue(), true, query.getOffset(), query.getLimit(),
+                    query.getSortOrders()).stream(),
+            query -> (int) service.count(filterText.getValue(), true));
 
     public ParticipantView() {
     	super();
@@ -49,6 +55,7 @@ public class ParticipantView extends VerticalLayout {
         filterText.addValueChangeListener(e -> updateList());
 
         grid.setColumns("uid", "displayName", "email", "permanent", "external");
+        grid.setDataProvider(dataProvider);
         grid.asSingleSelect().addValueChangeListener(event ->
             participantForm.showParticipant(grid.asSingleSelect().getValue()));
         grid.setSizeFull();
@@ -76,8 +83,42 @@ public class ParticipantView extends VerticalLayout {
     }
 
     public void updateList() {
-    	List<Participant> activeParticipants = service.findAll(filterText.getValue());
-    	service.removeInactive(activeParticipants);
-        grid.setItems(activeParticipants);
+        dataProvider.refreshAll();
+    }
+
+    /**
+     * Updates the grid after a participant has been changed in any session.
+     */
+    public void participantChanged(ParticipantChangeEvent event) {
+        Participant t = event.getItem();
+        // a row is only updated in place if the participant is shown and stays in the list
+        if (event.getType() == ChangeEvent.Type.UPDATED && grid.getDataCommunicator().getKeyMapper().has(t)
+                && isListed(t)) {
+            dataProvider.refreshItem(t);
+        } else {
+            dataProvider.refreshAll();
+        }
+    }
+
+    /**
+     * @return true if the participant belongs to the rows of the data
+     *         provider, i.e. is active or external and matches the filter
+     */
+    private boolean isListed(Participant t) {
+        if (!t.isActive() && !t.isExternal()) {
+            return false;
+        }
+        String filter = filterText.getValue();
+        if (filter == null || filter.isEmpty()) {
+            return true;
+        }
+        // the same fields as the search index of ParticipantService
+        filter = filter.toLowerCase(Locale.ROOT);
+        for (String field : new String[] { t.getUid(), t.getDisplayName(), t.getEmail() }) {
+            if (field != null && field.toLowerCase(Locale.ROOT).contains(filter)) {
+                return true;
+            }
+        }
+        return false;
     }
 }
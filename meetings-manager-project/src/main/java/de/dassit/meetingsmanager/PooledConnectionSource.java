@@ -0,0 +1,223 @@
+/*
+ * Copyright 2022 dass IT GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.dassit.meetingsmanager;
+
+import java.io.IOException;
+import java.sql.SQLException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+import com.j256.ormlite.db.DatabaseType;
+import com.j256.ormlite.jdbc.JdbcDatabaseConnection;
+import com.j256.ormlite.jdbc.JdbcPooledConnectionSource;
+import com.j256.ormlite.logger.Logger;
+import com.j256.ormlite.support.ConnectionSource;
+import com.j256.ormlite.support.DatabaseConnection;
+
+/**
+ * A ConnectionSource with separate pools for reading and writing.
+ * ORMlite asks for a read-only connection for queries and for a
+ * read-write connection for updates and transactions, so queries
+ * from different UI threads run in parallel while writes (which
+ * SQLite serializes anyway) queue for the small write pool.
+ * Each pool is bounded; a caller waits at most maxWaitMillis
+ * for a free connection before an SQLException is thrown.
+ * If {@link SqlitePragmas} are given, they are applied to every
+ * connection when it is opened.
+ */
+public class PooledConnectionSource implements ConnectionSource {
+	private final Pool readPool;
+	private final Pool writePool;
+	private final long maxWaitMillis;
+	private final SqlitePragmas pragmas;
+
+	/* connections currently handed out, with the pool they belong to */
+	private final Map<DatabaseConnection, Pool> leased = new ConcurrentHashMap<>();
+
+	public PooledConnectionSource(String jdbcUrl, int readPoolSize, int writePoolSize, long maxWaitMillis,
+			long checkIntervalMillis, long maxAgeMillis, SqlitePragmas pragmas) throws SQLException {
+		this.maxWaitMillis = maxWaitMillis;
+		this.pragmas = pragmas;
+		readPool = new Pool("read", createSource(jdbcUrl, readPoolSize, checkIntervalMillis, maxAgeMillis),
+				readPoolSize);
+		writePool = new Pool("write", createSource(jdbcUrl, writePoolSize, checkIntervalMillis, maxAgeMillis),
+				writePoolSize);
+	}
+
+	private JdbcPooledConnectionSource createSource(String jdbcUrl, int size, long checkIntervalMillis,
+			long maxAgeMillis) throws SQLException {
+		JdbcPooledConnectionSource source = new JdbcPooledConnectionSource() {
+			@Override
+			protected DatabaseConnection makeConnection(Logger logger) throws SQLException {
+				DatabaseConnection connection = super.makeConnection(logger);
+				if (pragmas != null) {
+					pragmas.apply(((JdbcDatabaseConnection) connection).getInternalConnection());
+				}
+				return connection;
+			}
+		};
+		source.setUrl(jdbcUrl);
+		source.setMaxConnectionsFree(size);
+		source.setMaxConnectionAgeMillis(maxAgeMillis);
+		// idle connections are validated by the pool's tester thread
+		source.setCheckConnectionsEveryMillis(checkIntervalMillis);
+		source.initialize();
+		return source;
+	}
+
+	/**
+	 * @return the settings in effect on a pooled connection, for logging
+	 */
+	public String describePragmas() throws SQLException {
+		if (pragmas == null) {
+			return "";
+		}
+		DatabaseConnection connection = getReadOnlyConnection(null);
+		try {
+			return pragmas.describe(((JdbcDatabaseConnection) connection).getInternalConnection());
+		} finally {
+			releaseConnection(connection);
+		}
+	}
+
+	@Override
+	public DatabaseConnection getReadOnlyConnection(String tableName) throws SQLException {
+		// inside a transaction all statements have to use the transaction's connection
+		DatabaseConnection special = writePool.source.getSpecialConnection(tableName);
+		if (special != null) {
+			return special;
+		}
+		return readPool.acquire(tableName);
+	}
+
+	@Override
+	public DatabaseConnection getReadWriteConnection(String tableName) throws SQLException {
+		DatabaseConnection special = writePool.source.getSpecialConnection(tableName);
+		if (special != null) {
+			return special;
+		}
+		return writePool.acquire(tableName);
+	}
+
+	@Override
+	public void releaseConnection(DatabaseConnection connection) throws SQLException {
+		if (connection == writePool.source.getSpecialConnection(null)) {
+			// still in use by a running transaction
+			return;
+		}
+		Pool pool = leased.remove(connection);
+		if (pool == null) {
+			throw new SQLException("Connection was not obtained from this connection source");
+		}
+		pool.release(connection);
+	}
+
+	@Override
+	public boolean saveSpecialConnection(DatabaseConnection connection) throws SQLException {
+		return writePool.source.saveSpecialConnection(connection);
+	}
+
+	@Override
+	public void clearSpecialConnection(DatabaseConnection connection) {
+		writePool.source.clearSpecialConnection(connection);
+	}
+
+	@Override
+	public DatabaseConnection getSpecialConnection(String tableName) {
+		return writePool.source.getSpecialConnection(tableName);
+	}
+
+	@Override
+	public void closeQuietly() {
+		readPool.source.closeQuietly();
+		writePool.source.closeQuietly();
+	}
+
+	@Override
+	public void close() throws IOException {
+		readPool.source.close();
+		writePool.source.close();
+	}
+
+	@Override
+	public DatabaseType getDatabaseType() {
+		return readPool.source.getDatabaseType();
+	}
+
+	@Override
+	public boolean isOpen(String tableName) {
+		return readPool.source.isOpen(tableName) && writePool.source.isOpen(tableName);
+	}
+
+	@Override
+	public boolean isSingleConnection(String tableName) {
+		return false;
+	}
+
+	/**
+	 * @return a short summary of the pool usage for logging
+	 */
+	public String getStatistics() {
+		return readPool.getStatistics() + ", " + writePool.getStatistics();
+	}
+
+	private class Pool {
+		private final String name;
+		private final JdbcPooledConnectionSource source;
+		private final Semaphore permits;
+
+		Pool(String name, JdbcPooledConnectionSource source, int size) {
+			this.name = name;
+			this.source = source;
+			this.permits = new Semaphore(size, true);
+		}
+
+		DatabaseConnection acquire(String tableName) throws SQLException {
+			try {
+				if (!permits.tryAcquire(maxWaitMillis, TimeUnit.MILLISECONDS)) {
+					throw new SQLException(
+							"No " + name + " connection available after " + maxWaitMillis + " ms");
+				}
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new SQLException("Interrupted while waiting for a " + name + " connection", e);
+			}
+			try {
+				DatabaseConnection connection = source.getReadWriteConnection(tableName);
+				leased.put(connection, this);
+				return connection;
+			} catch (SQLException | RuntimeException e) {
+				permits.release();
+				throw e;
+			}
+		}
+
+		void release(DatabaseConnection connection) throws SQLException {
+			try {
+				source.releaseConnection(connection);
+			} finally {
+				permits.release();
+			}
+		}
+
+		String getStatistics() {
+			return name + " pool: " + source.getCurrentConnectionsManaged() + " open, "
+					+ source.getCurrentConnectionsFree() + " idle, " + permits.getQueueLength() + " waiting";
+		}
+	}
+}
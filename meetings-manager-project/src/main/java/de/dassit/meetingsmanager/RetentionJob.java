@@ -0,0 +1,230 @@
+/*
+ * Copyright 2022 dass IT GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.dassit.meetingsmanager;
+
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import com.j256.ormlite.dao.Dao;
+import com.j256.ormlite.dao.DaoManager;
+import com.j256.ormlite.misc.TransactionManager;
+
+/**
+ * Removes past meetings from the database, replacing "meetingsdb.py clean".
+ * Meetings that started before the day retentionDays (default 0, i.e.
+ * today) are deleted with their participant lists, outbox rows and mail
+ * deliveries; external participants only invited to them are deleted and
+ * their organizers are deactivated, unless they are permanent or still
+ * organize another meeting. The meetings are purged in chunks of
+ * retentionChunkSize, each with a few statements in one transaction, so
+ * saves from the UI get the database in between.
+ * Runs every retentionIntervalHours (default 24) on a background thread;
+ * a negative retentionDays disables it. Started and stopped by the
+ * {@link ApplicationListener}.
+ */
+public class RetentionJob {
+	private static final Logger LOGGER = Logger.getLogger(RetentionJob.class.getName());
+	private static RetentionJob instance;
+
+	private static final long FIRST_RUN_DELAY_MINUTES = 5;
+
+	private ScheduledExecutorService executor;
+	private Dao<Meeting, Integer> dao;
+	private int retentionDays;
+	private int chunkSize;
+
+	public static synchronized RetentionJob getInstance() {
+		if (instance == null) {
+			instance = new RetentionJob();
+		}
+		return instance;
+	}
+
+	public synchronized void start() {
+		if (executor != null) {
+			return;
+		}
+		Configuration config = Configuration.getInstance();
+		retentionDays = config.getInt("retentionDays", 0);
+		if (retentionDays < 0) {
+			LOGGER.info("retentionDays is negative, past meetings are kept");
+			return;
+		}
+		chunkSize = Math.max(1, config.getInt("retentionChunkSize", 500));
+		long interval = Math.max(1, config.getInt("retentionIntervalHours", 24));
+		try {
+			dao = DaoManager.createDao(DbConnection.getConnectionSource(), Meeting.class);
+		} catch (SQLException e) {
+			LOGGER.log(Level.SEVERE, e.getMessage(), e);
+			return;
+		}
+		executor = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+			@Override
+			public Thread newThread(Runnable r) {
+				Thread t = new Thread(r, "retention-job");
+				t.setDaemon(true);
+				return t;
+			}
+		});
+		executor.scheduleWithFixedDelay(new Runnable() {
+			@Override
+			public void run() {
+				try {
+					purge();
+				} catch (SQLException | RuntimeException e) {
+					LOGGER.log(Level.SEVERE, e.getMessage(), e);
+				}
+			}
+		}, FIRST_RUN_DELAY_MINUTES, TimeUnit.HOURS.toMinutes(interval), TimeUnit.MINUTES);
+	}
+
+	/**
+	 * Stops the background thread after the running chunk.
+	 */
+	public void stop() {
+		ScheduledExecutorService running;
+		synchronized (this) {
+			running = executor;
+			executor = null;
+		}
+		if (running == null) {
+			return;
+		}
+		running.shutdownNow();
+		try {
+			running.awaitTermination(10, TimeUnit.SECONDS);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	/**
+	 * Purges the past meetings and reloads the caches if anything has
+	 * been removed.
+	 */
+	void purge() throws SQLException {
+		long started = System.currentTimeMillis();
+		long cutoff = LocalDate.now(MeetingService.ZONE).minusDays(retentionDays).atStartOfDay(MeetingService.ZONE)
+				.toInstant().toEpochMilli();
+		final Counts counts = new Counts();
+
+		List<String[]> ids;
+		do {
+			if (Thread.currentThread().isInterrupted()) {
+				break;
+			}
+			ids = dao.queryRaw("SELECT id FROM meetings WHERE start < " + cutoff + " ORDER BY id LIMIT " + chunkSize)
+					.getResults();
+			if (!ids.isEmpty()) {
+				purgeChunk(idList(ids), counts);
+			}
+		} while (ids.size() == chunkSize);
+
+		// left over by deletes in the UI, like the final sweeps of meetingsdb.py
+		counts.externals += sweep("DELETE FROM participant WHERE id IN (SELECT id FROM participant p"
+				+ " WHERE p.external = 1"
+				+ " AND NOT EXISTS (SELECT 1 FROM meeting_participant mp WHERE mp.participant_id = p.id)"
+				+ " AND NOT EXISTS (SELECT 1 FROM meetings m WHERE m.organizer_id = p.id) LIMIT " + chunkSize + ")");
+		counts.deactivated += sweep("UPDATE participant SET active = 0, version = version + 1"
+				+ " WHERE id IN (SELECT id FROM participant p WHERE p.active = 1 AND p.permanent = 0"
+				+ " AND NOT EXISTS (SELECT 1 FROM meetings m WHERE m.organizer_id = p.id) LIMIT " + chunkSize + ")");
+
+		if (counts.meetings > 0 || counts.externals > 0 || counts.deactivated > 0) {
+			ParticipantService.getInstance().loadFromDb();
+			MeetingService.getInstance().loadFromDb();
+		}
+		LOGGER.info("Purged " + counts.meetings + " meetings, " + counts.links + " participant list entries, "
+				+ counts.jobs + " outbox entries, " + counts.deliveries + " mail deliveries and "
+				+ counts.externals + " external participants, deactivated " + counts.deactivated
+				+ " participants in " + (System.currentTimeMillis() - started) + " ms");
+	}
+
+	/**
+	 * Deletes a chunk of meetings with everything that only belongs to
+	 * them, in one transaction.
+	 *
+	 * @param ids the meeting ids as SQL list, e.g. "(1,2,3)"
+	 */
+	private void purgeChunk(final String ids, final Counts counts) throws SQLException {
+		TransactionManager.callInTransaction(dao.getConnectionSource(), new Callable<Void>() {
+			@Override
+			public Void call() throws Exception {
+				// before the links and meetings are gone
+				counts.externals += dao.updateRaw("DELETE FROM participant WHERE external = 1 AND id IN"
+						+ " (SELECT participant_id FROM meeting_participant WHERE meeting_id IN " + ids + ")"
+						+ " AND NOT EXISTS (SELECT 1 FROM meeting_participant mp"
+						+ " WHERE mp.participant_id = participant.id AND mp.meeting_id NOT IN " + ids + ")"
+						+ " AND NOT EXISTS (SELECT 1 FROM meetings m"
+						+ " WHERE m.organizer_id = participant.id AND m.id NOT IN " + ids + ")");
+				counts.deactivated += dao.updateRaw("UPDATE participant SET active = 0, version = version + 1"
+						+ " WHERE active = 1 AND permanent = 0 AND id IN"
+						+ " (SELECT organizer_id FROM meetings WHERE id IN " + ids + ")"
+						+ " AND NOT EXISTS (SELECT 1 FROM meetings m"
+						+ " WHERE m.organizer_id = participant.id AND m.id NOT IN " + ids + ")");
+				counts.links += dao.updateRaw("DELETE FROM meeting_participant WHERE meeting_id IN " + ids);
+				counts.jobs += dao.updateRaw("DELETE FROM notification_outbox WHERE meeting_id IN " + ids);
+				counts.deliveries += dao.updateRaw("DELETE FROM mail_delivery WHERE meeting_id IN " + ids);
+				counts.meetings += dao.updateRaw("DELETE FROM meetings WHERE id IN " + ids);
+				return null;
+			}
+		});
+	}
+
+	/**
+	 * Runs a statement limited to chunkSize rows until it changes fewer
+	 * rows, each time in its own transaction.
+	 *
+	 * @return the number of changed rows
+	 */
+	private int sweep(String sql) throws SQLException {
+		int total = 0;
+		int changed;
+		do {
+			changed = dao.updateRaw(sql);
+			total += changed;
+		} while (changed == chunkSize && !Thread.currentThread().isInterrupted());
+		return total;
+	}
+
+	private static String idList(List<String[]> rows) {
+		StringBuilder sb = new StringBuilder("(");
+		for (String[] row : rows) {
+			if (sb.length() > 1) {
+				sb.append(',');
+			}
+			// numbers read from the database, safe to inline
+			sb.append(Integer.parseInt(row[0]));
+		}
+		return sb.append(')').toString();
+	}
+
+	private static class Counts {
+		int meetings;
+		int links;
+		int jobs;
+		int deliveries;
+		int externals;
+		int deactivated;
+	}
+}
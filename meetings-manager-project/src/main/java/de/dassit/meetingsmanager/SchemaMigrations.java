@@ -0,0 +1,196 @@
+/*
+ * Copyright 2022 dass IT GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.dassit.meetingsmanager;
+
+import java.sql.SQLException;
+import java.util.concurrent.Callable;
+import java.util.logging.Logger;
+
+import com.j256.ormlite.dao.Dao;
+import com.j256.ormlite.dao.DaoManager;
+import com.j256.ormlite.misc.TransactionManager;
+import com.j256.ormlite.support.ConnectionSource;
+import com.j256.ormlite.table.TableUtils;
+
+/**
+ * Brings the database schema up to date. Every migration has a version
+ * number; the applied versions are recorded in the schema_version table,
+ * so each migration runs exactly once per database, inside a transaction.
+ * New migrations are appended to {@link #MIGRATIONS} with the next number.
+ * The migrations are run by the service singletons before first use.
+ */
+public class SchemaMigrations {
+	private static final Logger LOGGER = Logger.getLogger(SchemaMigrations.class.getName());
+	private static final String NOW_MILLIS = "CAST((julianday('now') - 2440587.5) * 86400000 AS INTEGER)";
+
+	private static boolean done;
+
+	private static final Migration[] MIGRATIONS = {
+		new Migration(1, "create tables") {
+			@Override
+			void apply(ConnectionSource cs, Dao<SchemaVersion, Integer> db) throws SQLException {
+				TableUtils.createTableIfNotExists(cs, Meeting.class);
+				TableUtils.createTableIfNotExists(cs, Participant.class);
+				TableUtils.createTableIfNotExists(cs, MeetingParticipant.class);
+			}
+		},
+		new Migration(2, "track modifications of meetings and participants") {
+			@Override
+			void apply(ConnectionSource cs, Dao<SchemaVersion, Integer> db) throws SQLException {
+				addModifiedColumn(db, "meetings");
+				addModifiedColumn(db, "participant");
+			}
+		},
+		new Migration(3, "add indexes for join table, user lookup and meeting start") {
+			@Override
+			void apply(ConnectionSource cs, Dao<SchemaVersion, Integer> db) throws SQLException {
+				db.executeRawNoArgs("CREATE INDEX IF NOT EXISTS meeting_participant_meeting_idx"
+						+ " ON meeting_participant (meeting_id)");
+				db.executeRawNoArgs("CREATE INDEX IF NOT EXISTS meeting_participant_participant_idx"
+						+ " ON meeting_participant (participant_id)");
+				db.executeRawNoArgs("CREATE INDEX IF NOT EXISTS participant_uid_idx ON participant (uid)");
+				db.executeRawNoArgs("CREATE INDEX IF NOT EXISTS participant_email_idx ON participant (email)");
+				db.executeRawNoArgs("CREATE INDEX IF NOT EXISTS meetings_start_idx ON meetings (start)");
+			}
+		},
+		new Migration(4, "add index for date range queries") {
+			@Override
+			void apply(ConnectionSource cs, Dao<SchemaVersion, Integer> db) throws SQLException {
+				db.executeRawNoArgs("CREATE INDEX IF NOT EXISTS meetings_end_start_idx ON meetings (\"end\", start)");
+			}
+		},
+		new Migration(5, "add version columns for optimistic locking") {
+			@Override
+			void apply(ConnectionSource cs, Dao<SchemaVersion, Integer> db) throws SQLException {
+				for (String tableName : new String[] { "meetings", "participant" }) {
+					if (!hasColumn(db, tableName, "version")) {
+						db.executeRawNoArgs("ALTER TABLE " + tableName + " ADD COLUMN version INTEGER NOT NULL DEFAULT 0");
+					}
+				}
+			}
+		},
+		new Migration(6, "add index for organizer lookup") {
+			@Override
+			void apply(ConnectionSource cs, Dao<SchemaVersion, Integer> db) throws SQLException {
+				db.executeRawNoArgs("CREATE INDEX IF NOT EXISTS meetings_organizer_idx ON meetings (organizer_id)");
+			}
+		},
+		new Migration(7, "add notification outbox") {
+			@Override
+			void apply(ConnectionSource cs, Dao<SchemaVersion, Integer> db) throws SQLException {
+				TableUtils.createTableIfNotExists(cs, NotificationJob.class);
+				// invitations that meetingsdb.py would still have sent
+				db.executeRawNoArgs("INSERT INTO notification_outbox (meeting_id, created)"
+						+ " SELECT id, " + NOW_MILLIS + " FROM meetings WHERE notified = 0 AND \"end\" > " + NOW_MILLIS);
+			}
+		},
+		new Migration(8, "add delivery state per invitation mail") {
+			@Override
+			void apply(ConnectionSource cs, Dao<SchemaVersion, Integer> db) throws SQLException {
+				TableUtils.createTableIfNotExists(cs, MailDelivery.class);
+				db.executeRawNoArgs("CREATE INDEX IF NOT EXISTS mail_delivery_state_next_attempt_idx"
+						+ " ON mail_delivery (state, next_attempt)");
+				db.executeRawNoArgs("CREATE INDEX IF NOT EXISTS mail_delivery_meeting_idx ON mail_delivery (meeting_id)");
+			}
+		},
+		new Migration(9, "remove retry columns from the notification outbox") {
+			@Override
+			void apply(ConnectionSource cs, Dao<SchemaVersion, Integer> db) throws SQLException {
+				// retries are kept per recipient in mail_delivery; SQLite cannot drop columns
+				if (hasColumn(db, "notification_outbox", "attempts")) {
+					db.executeRawNoArgs("DROP INDEX IF EXISTS notification_outbox_next_attempt_idx");
+					db.executeRawNoArgs("ALTER TABLE notification_outbox RENAME TO notification_outbox_old");
+					TableUtils.createTableIfNotExists(cs, NotificationJob.class);
+					db.executeRawNoArgs("INSERT INTO notification_outbox (id, meeting_id, created)"
+							+ " SELECT id, meeting_id, created FROM notification_outbox_old");
+					db.executeRawNoArgs("DROP TABLE notification_outbox_old");
+				}
+			}
+		},
+	};
+
+	/**
+	 * Applies all migrations that have not been applied to the database yet.
+	 * Only the first call does any work.
+	 */
+	public static synchronized void migrate(final ConnectionSource cs) throws SQLException {
+		if (done) {
+			return;
+		}
+
+		TableUtils.createTableIfNotExists(cs, SchemaVersion.class);
+		final Dao<SchemaVersion, Integer> db = DaoManager.createDao(cs, SchemaVersion.class);
+		long current = db.queryRawValue("SELECT COALESCE(MAX(version), 0) FROM schema_version");
+
+		for (final Migration m : MIGRATIONS) {
+			if (m.version <= current) {
+				continue;
+			}
+			TransactionManager.callInTransaction(cs, new Callable<Void>() {
+				@Override
+				public Void call() throws Exception {
+					m.apply(cs, db);
+					db.create(new SchemaVersion(m.version, m.description));
+					return null;
+				}
+			});
+			LOGGER.info("Applied schema migration " + m.version + ": " + m.description);
+		}
+		done = true;
+	}
+
+	/**
+	 * Adds a "modified" column with the time of the last insert or update
+	 * in milliseconds, maintained by triggers (see {@link ChangeTracker}).
+	 */
+	private static void addModifiedColumn(Dao<SchemaVersion, Integer> db, String tableName) throws SQLException {
+		if (!hasColumn(db, tableName, "modified")) {
+			db.executeRawNoArgs("ALTER TABLE " + tableName + " ADD COLUMN modified INTEGER NOT NULL DEFAULT 0");
+		}
+		db.executeRawNoArgs("CREATE TRIGGER IF NOT EXISTS " + tableName + "_modified_insert AFTER INSERT ON "
+				+ tableName + " BEGIN UPDATE " + tableName + " SET modified = " + NOW_MILLIS
+				+ " WHERE id = NEW.id; END");
+		db.executeRawNoArgs("CREATE TRIGGER IF NOT EXISTS " + tableName + "_modified_update AFTER UPDATE ON "
+				+ tableName + " WHEN NEW.modified = OLD.modified BEGIN UPDATE " + tableName + " SET modified = "
+				+ NOW_MILLIS + " WHERE id = NEW.id; END");
+	}
+
+	/**
+	 * @return true if the table already has the column, e.g. because it
+	 *         has been created from the current entity class
+	 */
+	private static boolean hasColumn(Dao<SchemaVersion, Integer> db, String tableName, String columnName)
+			throws SQLException {
+		for (String[] column : db.queryRaw("PRAGMA table_info(" + tableName + ")").getResults()) {
+			if (columnName.equals(column[1])) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private static abstract class Migration {
+		final int version;
+		final String description;
+
+		Migration(int version, String description) {
+			this.version = version;
+			this.description = description;
+		}
+
+		abstract void apply(ConnectionSource cs, Dao<SchemaVersion, Integer> db) throws SQLException;
+	}
+}
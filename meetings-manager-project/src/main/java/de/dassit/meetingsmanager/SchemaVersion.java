@@ -0,0 +1,56 @@
+/*
+ * Copyright 2022 dass IT GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.dassit.meetingsmanager;
+
+import java.util.Date;
+
+import com.j256.ormlite.field.DatabaseField;
+import com.j256.ormlite.table.DatabaseTable;
+
+/**
+ * DAO class recording an applied schema migration,
+ * see {@link SchemaMigrations}.
+ */
+@DatabaseTable(tableName = "schema_version")
+public class SchemaVersion {
+	@DatabaseField(id = true)
+	int version;
+	@DatabaseField
+	String description;
+	@DatabaseField
+	Date applied;
+
+	public SchemaVersion() {
+	}
+
+	public SchemaVersion(int version, String description) {
+		this.version = version;
+		this.description = description;
+		this.applied = new Date();
+	}
+
+	public int getVersion() {
+		return version;
+	}
+
+	public String getDescription() {
+		return description;
+	}
+
+	public Date getApplied() {
+		return applied;
+	}
+}
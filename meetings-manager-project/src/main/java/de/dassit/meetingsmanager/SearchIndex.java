@@ -0,0 +1,282 @@
+/*
+ * Copyright 2022 dass IT GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.dassit.meetingsmanager;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * An inverted index for case-insensitive substring search.
+ * Every indexed object is stored under all character bigrams and
+ * trigrams of its text fields. A search takes the shortest posting
+ * list of the grams in the search string and only checks the objects
+ * in it, instead of looking at every object.
+ * Changes are kept in a small overlay that is searched by scanning and
+ * merged into new posting lists once it grows, so copying the index for
+ * a single change does not copy all posting lists.
+ */
+public class SearchIndex {
+	/* separates the fields of an object, so no gram spans two fields */
+	private static final char SEPARATOR = '\u0000';
+	/* overlay text of removed objects, text() never returns it */
+	private static final String REMOVED = String.valueOf(SEPARATOR);
+
+	/* lower-cased text of each object, never modified once built */
+	private IntObjectMap<String> texts;
+	/* gram -> sorted ids of the objects containing it, never modified once built */
+	private Map<Long, int[]> postings;
+	/* objects changed since the posting lists were built, REMOVED for removed objects */
+	private IntObjectMap<String> overlay;
+	private int size;
+
+	public SearchIndex() {
+		this(new IntObjectMap<String>(), new HashMap<Long, int[]>(), new IntObjectMap<String>(), 0);
+	}
+
+	private SearchIndex(IntObjectMap<String> texts, Map<Long, int[]> postings, IntObjectMap<String> overlay,
+			int size) {
+		this.texts = texts;
+		this.postings = postings;
+		this.overlay = overlay;
+		this.size = size;
+	}
+
+	/**
+	 * @return an independent copy of the index. Only the overlay is
+	 *         copied, the texts and posting lists are shared.
+	 */
+	public SearchIndex copy() {
+		return new SearchIndex(texts, postings, new IntObjectMap<String>(overlay), size);
+	}
+
+	/**
+	 * Builds the index for many objects at once. The ids of every gram
+	 * are collected and turned into a posting list once, instead of
+	 * changing the list for every object.
+	 *
+	 * @param ids    the ids of the objects, without duplicates
+	 * @param fields the searchable texts of each object
+	 */
+	public static SearchIndex of(int[] ids, String[][] fields) {
+		String[] texts = new String[ids.length];
+		for (int i = 0; i < ids.length; i++) {
+			texts[i] = text(fields[i]);
+		}
+		return build(ids, texts);
+	}
+
+	private static SearchIndex build(int[] ids, String[] texts) {
+		SearchIndex index = new SearchIndex();
+		Map<Long, IdList> lists = new HashMap<Long, IdList>();
+		boolean ascending = true;
+		for (int i = 0; i < ids.length; i++) {
+			ascending &= i == 0 || ids[i - 1] < ids[i];
+			index.texts.put(ids[i], texts[i]);
+			for (long gram : grams(texts[i])) {
+				IdList list = lists.get(gram);
+				if (list == null) {
+					list = new IdList();
+					lists.put(gram, list);
+				}
+				list.add(ids[i]);
+			}
+		}
+		for (Map.Entry<Long, IdList> e : lists.entrySet()) {
+			int[] postings = e.getValue().toArray();
+			if (!ascending) {
+				Arrays.sort(postings);
+			}
+			index.postings.put(e.getKey(), postings);
+		}
+		index.size = ids.length;
+		return index;
+	}
+
+	/**
+	 * Adds an object to the index or replaces its fields.
+	 *
+	 * @param id     the id of the object
+	 * @param fields the searchable texts, null values are ignored
+	 */
+	public void put(int id, String... fields) {
+		if (text(id) == null) {
+			size++;
+		}
+		overlay.put(id, text(fields));
+		compactIfNeeded();
+	}
+
+	/**
+	 * Removes an object from the index.
+	 */
+	public void remove(int id) {
+		if (text(id) == null) {
+			return;
+		}
+		size--;
+		if (texts.containsKey(id)) {
+			overlay.put(id, REMOVED);
+		} else {
+			overlay.remove(id);
+		}
+		compactIfNeeded();
+	}
+
+	/**
+	 * @return the ids of all objects with a field containing the search
+	 *         string (ignoring case), in ascending order
+	 */
+	public List<Integer> search(String query) {
+		String q = query.toLowerCase(Locale.ROOT);
+		List<Integer> result = new ArrayList<Integer>();
+
+		int[] candidates = null;
+		if (q.length() < 2) {
+			// single characters are not indexed
+			candidates = texts.keys();
+		} else {
+			for (long gram : grams(q)) {
+				int[] ids = postings.get(gram);
+				if (ids == null) {
+					candidates = null;
+					break;
+				}
+				if (candidates == null || ids.length < candidates.length) {
+					candidates = ids;
+				}
+			}
+		}
+		if (candidates != null) {
+			for (int id : candidates) {
+				if (!overlay.containsKey(id) && texts.get(id).contains(q)) {
+					result.add(id);
+				}
+			}
+		}
+		// the overlay is small and not in the posting lists
+		for (int id : overlay.keys()) {
+			String text = overlay.get(id);
+			if (!text.equals(REMOVED) && text.contains(q)) {
+				result.add(id);
+			}
+		}
+		if (q.length() < 2 || !overlay.isEmpty()) {
+			result.sort(null);
+		}
+		return result;
+	}
+
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * @return the current text of an object, or null if it is not indexed
+	 */
+	private String text(int id) {
+		String text = overlay.get(id);
+		if (text == null) {
+			return texts.get(id);
+		}
+		return text.equals(REMOVED) ? null : text;
+	}
+
+	/**
+	 * Merges the overlay into new posting lists once it has grown, so
+	 * searches stay fast and the overlay stays cheap to copy.
+	 */
+	private void compactIfNeeded() {
+		if (overlay.size() <= 64 + texts.size() / 16) {
+			return;
+		}
+		int[] ids = new int[size];
+		String[] all = new String[size];
+		int n = 0;
+		for (int id : texts.keys()) {
+			if (!overlay.containsKey(id)) {
+				ids[n] = id;
+				all[n++] = texts.get(id);
+			}
+		}
+		for (int id : overlay.keys()) {
+			String text = overlay.get(id);
+			if (!text.equals(REMOVED)) {
+				ids[n] = id;
+				all[n++] = text;
+			}
+		}
+		SearchIndex merged = build(ids, all);
+		texts = merged.texts;
+		postings = merged.postings;
+		overlay = new IntObjectMap<String>();
+	}
+
+	/**
+	 * @return the lower-cased fields, separated so no gram spans two
+	 *         fields
+	 */
+	private static String text(String... fields) {
+		StringBuilder sb = new StringBuilder();
+		for (String field : fields) {
+			if (field != null && !field.isEmpty()) {
+				sb.append(field.toLowerCase(Locale.ROOT)).append(SEPARATOR);
+			}
+		}
+		return sb.toString();
+	}
+
+	/**
+	 * @return the bigrams and trigrams of a text, encoded as longs
+	 */
+	private static Set<Long> grams(String text) {
+		Set<Long> result = new HashSet<Long>();
+		for (int i = 0; i + 1 < text.length(); i++) {
+			char c1 = text.charAt(i);
+			char c2 = text.charAt(i + 1);
+			if (c1 == SEPARATOR || c2 == SEPARATOR) {
+				continue;
+			}
+			result.add((1L << 48) | ((long) c1 << 16) | c2);
+			if (i + 2 < text.length() && text.charAt(i + 2) != SEPARATOR) {
+				result.add(((long) c1 << 32) | ((long) c2 << 16) | text.charAt(i + 2));
+			}
+		}
+		return result;
+	}
+
+	/* a growing list of ids, used while building */
+	private static class IdList {
+		private int[] ids = new int[4];
+		private int size;
+
+		void add(int id) {
+			if (size == ids.length) {
+				ids = Arrays.copyOf(ids, size * 2);
+			}
+			ids[size++] = id;
+		}
+
+		int[] toArray() {
+			return Arrays.copyOf(ids, size);
+		}
+	}
+}
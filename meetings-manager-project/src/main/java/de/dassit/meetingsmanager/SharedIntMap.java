@@ -0,0 +1,173 @@
+/*
+ * Copyright 2022 dass IT GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.dassit.meetingsmanager;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A map with int keys for copy-on-write snapshots. A copy shares the
+ * entries of the original and keeps its own changes in a small overlay,
+ * which is merged into a new base map once it grows, so copying the map
+ * for a single change does not copy all entries.
+ * A map must not be changed after it has been copied.
+ * Null values are not allowed.
+ */
+public final class SharedIntMap<V> {
+	/* marks keys removed since the base map was shared */
+	private static final Object REMOVED = new Object();
+
+	private IntObjectMap<V> base;
+	/* true if the base map is not shared with another map and may be changed */
+	private boolean ownsBase;
+	/* changes since the base map was shared, REMOVED for removed keys */
+	private IntObjectMap<Object> overlay;
+	private int size;
+
+	public SharedIntMap() {
+		this(new IntObjectMap<V>(), true, new IntObjectMap<Object>(), 0);
+	}
+
+	private SharedIntMap(IntObjectMap<V> base, boolean ownsBase, IntObjectMap<Object> overlay, int size) {
+		this.base = base;
+		this.ownsBase = ownsBase;
+		this.overlay = overlay;
+		this.size = size;
+	}
+
+	/**
+	 * @return a copy that shares the entries of this map
+	 */
+	public SharedIntMap<V> copy() {
+		return new SharedIntMap<V>(base, false, new IntObjectMap<Object>(overlay), size);
+	}
+
+	@SuppressWarnings("unchecked")
+	public V get(int key) {
+		if (!overlay.isEmpty()) {
+			Object changed = overlay.get(key);
+			if (changed != null) {
+				return changed == REMOVED ? null : (V) changed;
+			}
+		}
+		return base.get(key);
+	}
+
+	public boolean containsKey(int key) {
+		return get(key) != null;
+	}
+
+	/**
+	 * @return the previous value, or null
+	 */
+	public V put(int key, V value) {
+		if (value == null) {
+			throw new IllegalArgumentException("null value for key " + key);
+		}
+		V old = get(key);
+		if (ownsBase) {
+			base.put(key, value);
+		} else {
+			overlay.put(key, value);
+			compactIfNeeded();
+		}
+		if (old == null) {
+			size++;
+		}
+		return old;
+	}
+
+	/**
+	 * @return the removed value, or null
+	 */
+	public V remove(int key) {
+		V old = get(key);
+		if (old == null) {
+			return null;
+		}
+		if (ownsBase) {
+			base.remove(key);
+		} else {
+			overlay.put(key, REMOVED);
+			compactIfNeeded();
+		}
+		size--;
+		return old;
+	}
+
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * @return the keys, in no particular order
+	 */
+	public int[] keys() {
+		if (overlay.isEmpty()) {
+			return base.keys();
+		}
+		int[] result = new int[size];
+		int n = 0;
+		for (int key : base.keys()) {
+			if (!overlay.containsKey(key)) {
+				result[n++] = key;
+			}
+		}
+		for (int key : overlay.keys()) {
+			if (overlay.get(key) != REMOVED) {
+				result[n++] = key;
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * @return the values, in no particular order
+	 */
+	public List<V> values() {
+		if (overlay.isEmpty()) {
+			return base.values();
+		}
+		List<V> result = new ArrayList<V>(size);
+		for (int key : keys()) {
+			result.add(get(key));
+		}
+		return result;
+	}
+
+	/**
+	 * Merges the overlay into a new base map once it has grown, so lookups
+	 * stay fast and the overlay stays cheap to copy.
+	 */
+	@SuppressWarnings("unchecked")
+	private void compactIfNeeded() {
+		if (overlay.size() <= 64 + base.size() / 16) {
+			return;
+		}
+		IntObjectMap<V> merged = new IntObjectMap<V>(base);
+		for (int key : overlay.keys()) {
+			Object changed = overlay.get(key);
+			if (changed == REMOVED) {
+				merged.remove(key);
+			} else {
+				merged.put(key, (V) changed);
+			}
+		}
+		base = merged;
+		ownsBase = true;
+		overlay = new IntObjectMap<Object>();
+	}
+}
@@ -0,0 +1,111 @@
+/*
+ * Copyright 2022 dass IT GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.dassit.meetingsmanager;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * A map for copy-on-write snapshots, see {@link SharedIntMap}. A copy
+ * shares the entries of the original and keeps its own changes in a small
+ * overlay, which is merged into a new base map once it grows.
+ * A map must not be changed after it has been copied.
+ * Null keys and values are not allowed.
+ */
+public final class SharedMap<K, V> {
+	/* marks keys removed since the base map was shared */
+	private static final Object REMOVED = new Object();
+
+	private HashMap<K, V> base;
+	/* true if the base map is not shared with another map and may be changed */
+	private boolean ownsBase;
+	/* changes since the base map was shared, REMOVED for removed keys */
+	private HashMap<K, Object> overlay;
+
+	public SharedMap() {
+		this(new HashMap<K, V>(), true, new HashMap<K, Object>());
+	}
+
+	private SharedMap(HashMap<K, V> base, boolean ownsBase, HashMap<K, Object> overlay) {
+		this.base = base;
+		this.ownsBase = ownsBase;
+		this.overlay = overlay;
+	}
+
+	/**
+	 * @return a copy that shares the entries of this map
+	 */
+	public SharedMap<K, V> copy() {
+		return new SharedMap<K, V>(base, false, new HashMap<K, Object>(overlay));
+	}
+
+	@SuppressWarnings("unchecked")
+	public V get(K key) {
+		if (!overlay.isEmpty()) {
+			Object changed = overlay.get(key);
+			if (changed != null) {
+				return changed == REMOVED ? null : (V) changed;
+			}
+		}
+		return base.get(key);
+	}
+
+	public void put(K key, V value) {
+		if (value == null) {
+			throw new IllegalArgumentException("null value for key " + key);
+		}
+		if (ownsBase) {
+			base.put(key, value);
+		} else {
+			overlay.put(key, value);
+			compactIfNeeded();
+		}
+	}
+
+	/**
+	 * Removes the key only if it is mapped to the given value.
+	 */
+	public void remove(K key, V value) {
+		V current = get(key);
+		if (current == null || !current.equals(value)) {
+			return;
+		}
+		if (ownsBase) {
+			base.remove(key);
+		} else {
+			overlay.put(key, REMOVED);
+			compactIfNeeded();
+		}
+	}
+
+	@SuppressWarnings("unchecked")
+	private void compactIfNeeded() {
+		if (overlay.size() <= 64 + base.size() / 16) {
+			return;
+		}
+		HashMap<K, V> merged = new HashMap<K, V>(base);
+		for (Map.Entry<K, Object> e : overlay.entrySet()) {
+			if (e.getValue() == REMOVED) {
+				merged.remove(e.getKey());
+			} else {
+				merged.put(e.getKey(), (V) e.getValue());
+			}
+		}
+		base = merged;
+		ownsBase = true;
+		overlay = new HashMap<K, Object>();
+	}
+}
@@ -0,0 +1,86 @@
+/*
+ * Copyright 2022 dass IT GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.dassit.meetingsmanager;
+
+import java.util.Properties;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import javax.mail.MessagingException;
+import javax.mail.Session;
+import javax.mail.Transport;
+import javax.mail.internet.MimeMessage;
+
+/**
+ * Sends mails to an SMTP server with JavaMail.
+ */
+public class SmtpTransport implements MailTransport {
+	private static final Logger LOGGER = Logger.getLogger(SmtpTransport.class.getName());
+
+	private final Session session;
+
+	public SmtpTransport(String host, int port) {
+		Properties props = new Properties();
+		props.put("mail.smtp.host", host);
+		props.put("mail.smtp.port", String.valueOf(port));
+		props.put("mail.smtp.connectiontimeout", "30000");
+		props.put("mail.smtp.timeout", "30000");
+		this.session = Session.getInstance(props);
+	}
+
+	/**
+	 * @return a transport for the settings smtpHost and smtpPort
+	 */
+	public static SmtpTransport fromConfiguration() {
+		Configuration config = Configuration.getInstance();
+		String host = config.get("smtpHost");
+		if (host == null || host.trim().isEmpty()) {
+			host = "127.0.0.1";
+		}
+		return new SmtpTransport(host.trim(), config.getInt("smtpPort", 25));
+	}
+
+	@Override
+	public MimeMessage createMessage() {
+		return new MimeMessage(session);
+	}
+
+	@Override
+	public Connection connect() throws MessagingException {
+		final Transport transport = session.getTransport("smtp");
+		transport.connect();
+		return new Connection() {
+			@Override
+			public void send(MimeMessage message) throws MessagingException {
+				transport.sendMessage(message, message.getAllRecipients());
+			}
+
+			@Override
+			public boolean isConnected() {
+				return transport.isConnected();
+			}
+
+			@Override
+			public void close() {
+				try {
+					transport.close();
+				} catch (MessagingException e) {
+					LOGGER.log(Level.FINE, e.getMessage(), e);
+				}
+			}
+		};
+	}
+}
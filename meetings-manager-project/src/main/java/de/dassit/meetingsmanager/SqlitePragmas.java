@@ -0,0 +1,118 @@
+/*
+ * Copyright 2022 dass IT GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.dassit.meetingsmanager;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.logging.Logger;
+
+/**
+ * The SQLite settings applied to every connection opened by
+ * {@link DbConnection}. The defaults let readers continue while
+ * the application or meetingsdb.py write (write-ahead log) and make
+ * a writer wait for a lock instead of failing immediately.
+ * Each value can be changed in the configuration file:
+ * <ul>
+ * <li>sqliteJournalMode (default WAL)</li>
+ * <li>sqliteSynchronous (default NORMAL)</li>
+ * <li>sqliteBusyTimeout in milliseconds (default 10000)</li>
+ * <li>sqliteCacheSize in pages, or KiB if negative (default -16000)</li>
+ * <li>sqliteMmapSize in bytes (default 134217728)</li>
+ * <li>sqliteTempStore (default MEMORY)</li>
+ * </ul>
+ * An empty value keeps the SQLite default for that setting.
+ */
+public class SqlitePragmas {
+	private static final Logger LOGGER = Logger.getLogger(SqlitePragmas.class.getName());
+
+	private final Map<String, String> pragmas = new LinkedHashMap<String, String>();
+
+	public SqlitePragmas(Configuration config) {
+		put(config, "journal_mode", "sqliteJournalMode", "WAL");
+		put(config, "synchronous", "sqliteSynchronous", "NORMAL");
+		put(config, "busy_timeout", "sqliteBusyTimeout", "10000");
+		put(config, "cache_size", "sqliteCacheSize", "-16000");
+		put(config, "mmap_size", "sqliteMmapSize", "134217728");
+		put(config, "temp_store", "sqliteTempStore", "MEMORY");
+	}
+
+	private void put(Configuration config, String pragma, String key, String defaultValue) {
+		String value = config.get(key);
+		if (value == null) {
+			value = defaultValue;
+		}
+		value = value.trim();
+		if (value.isEmpty()) {
+			return;
+		}
+		if (!value.matches("-?[A-Za-z0-9_]+")) {
+			LOGGER.warning("Ignoring invalid value for " + key + ": " + value);
+			return;
+		}
+		pragmas.put(pragma, value);
+	}
+
+	/**
+	 * @return true if the JDBC URL refers to an SQLite database
+	 */
+	public static boolean isSqlite(String jdbcUrl) {
+		return jdbcUrl != null && jdbcUrl.startsWith("jdbc:sqlite:");
+	}
+
+	/**
+	 * Applies the settings to a newly opened connection.
+	 */
+	public void apply(Connection connection) throws SQLException {
+		Statement statement = connection.createStatement();
+		try {
+			for (Map.Entry<String, String> pragma : pragmas.entrySet()) {
+				statement.execute("PRAGMA " + pragma.getKey() + " = " + pragma.getValue());
+			}
+		} finally {
+			statement.close();
+		}
+	}
+
+	/**
+	 * Reads back the configured settings from a connection.
+	 *
+	 * @return the values in effect, e.g. for logging
+	 */
+	public String describe(Connection connection) throws SQLException {
+		StringBuilder sb = new StringBuilder();
+		Statement statement = connection.createStatement();
+		try {
+			for (String pragma : pragmas.keySet()) {
+				ResultSet rs = statement.executeQuery("PRAGMA " + pragma);
+				try {
+					if (sb.length() > 0) {
+						sb.append(", ");
+					}
+					sb.append(pragma).append('=').append(rs.next() ? rs.getString(1) : "?");
+				} finally {
+					rs.close();
+				}
+			}
+		} finally {
+			statement.close();
+		}
+		return sb.toString();
+	}
+}
@@ -0,0 +1,80 @@
+/*
+ * Copyright 2022 dass IT GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.dassit.meetingsmanager;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Encodes a small set of strings, like the configured rooms, as small
+ * ints. Every string is kept once; unknown strings are added on first
+ * use. Codes never change, so they can be used as keys in the caches.
+ */
+public final class StringDictionary {
+	public static final int NONE = -1;
+
+	private final Map<String, Integer> codes = new HashMap<String, Integer>();
+	private volatile String[] values = new String[0];
+
+	public StringDictionary(Collection<String> initial) {
+		for (String value : initial) {
+			encode(value);
+		}
+	}
+
+	/**
+	 * @return the code of the value, adding it if necessary, or
+	 *         {@link #NONE} for null and empty strings
+	 */
+	public synchronized int encode(String value) {
+		if (value == null || value.isEmpty()) {
+			return NONE;
+		}
+		Integer code = codes.get(value);
+		if (code == null) {
+			code = values.length;
+			String[] next = Arrays.copyOf(values, code + 1);
+			next[code] = value;
+			codes.put(value, code);
+			values = next;
+		}
+		return code;
+	}
+
+	/**
+	 * @return the code of the value without adding it, or {@link #NONE}
+	 */
+	public synchronized int lookup(String value) {
+		Integer code = value == null ? null : codes.get(value);
+		return code == null ? NONE : code;
+	}
+
+	/**
+	 * @return the value for a code, or null for {@link #NONE}
+	 */
+	public String decode(int code) {
+		return code == NONE ? null : values[code];
+	}
+
+	/**
+	 * @return the single stored instance equal to the value
+	 */
+	public String canonical(String value) {
+		return value == null || value.isEmpty() ? value : decode(encode(value));
+	}
+}
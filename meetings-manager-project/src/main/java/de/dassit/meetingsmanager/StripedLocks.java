@@ -0,0 +1,77 @@
+/*
+ * Copyright 2022 dass IT GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.dassit.meetingsmanager;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * A fixed set of locks for keys like entity ids. A key always maps to the
+ * same lock, so writes to the same entity are serialized, while writes to
+ * different entities usually get different locks and run in parallel.
+ */
+public class StripedLocks {
+	private final ReentrantLock[] locks;
+
+	public StripedLocks(int stripes) {
+		locks = new ReentrantLock[stripes];
+		for (int i = 0; i < stripes; i++) {
+			locks[i] = new ReentrantLock();
+		}
+	}
+
+	/**
+	 * Acquires the locks for the given keys, always in the same order
+	 * to avoid deadlocks. Null keys (e.g. ids of new entities) need no lock.
+	 *
+	 * @return the locked stripes, to be passed to {@link #unlock(int[])}
+	 */
+	public int[] lock(Collection<?> keys) {
+		int[] stripes = new int[keys.size()];
+		int n = 0;
+		for (Object key : keys) {
+			if (key != null) {
+				stripes[n++] = (key.hashCode() & 0x7fffffff) % locks.length;
+			}
+		}
+		stripes = Arrays.copyOf(stripes, n);
+		Arrays.sort(stripes);
+
+		int locked = 0;
+		try {
+			for (int i = 0; i < stripes.length; i++) {
+				if (i == 0 || stripes[i] != stripes[i - 1]) {
+					locks[stripes[i]].lock();
+				}
+				locked = i + 1;
+			}
+		} finally {
+			if (locked < stripes.length) {
+				unlock(Arrays.copyOf(stripes, locked));
+			}
+		}
+		return stripes;
+	}
+
+	public void unlock(int[] stripes) {
+		for (int i = stripes.length - 1; i >= 0; i--) {
+			if (i == 0 || stripes[i] != stripes[i - 1]) {
+				locks[stripes[i]].unlock();
+			}
+		}
+	}
+}
@@ -206,8 +206,14 @@ if __name__ == '__main__':
     db = open_db(dbpath)
 
     if cmd == 'mail':
-        process_unsent_meetings(db)
+        # invitations are sent by the web application, see README.md
+        sys.stderr.write("meetingsdb.py mail is obsolete, invitations are sent by the application,\n"
+                         "also for meetings inserted directly into the database.\n"
+                         "Please set mailSender in the configuration and remove the cron job.\n")
     elif cmd == 'clean':
+        # past meetings are purged by the web application, see README.md
+        sys.stderr.write("meetingsdb.py clean is deprecated, past meetings are purged by the application.\n"
+                         "Please remove the cron job.\n")
         remove_old_meetings(db)
         remove_old_external_teilnehmer(db)
         deactivate_old_organisator(db)